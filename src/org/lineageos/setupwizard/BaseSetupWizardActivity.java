@@ -41,6 +41,7 @@ import com.google.android.setupdesign.util.ThemeHelper;
 
 import org.lineageos.setupwizard.NavigationLayout.NavigationBarListener;
 import org.lineageos.setupwizard.util.SetupWizardUtils;
+import org.lineageos.setupwizard.wizardmanager.WizardManager;
 
 public abstract class BaseSetupWizardActivity extends AppCompatActivity implements
         NavigationBarListener {
@@ -52,6 +53,8 @@ public abstract class BaseSetupWizardActivity extends AppCompatActivity implemen
 
     private ActivityResultLauncher<Intent> mNextIntentResultLauncher;
 
+    private boolean mNextStepPrefetched;
+
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
         if (LOGV) {
@@ -101,6 +104,15 @@ public abstract class BaseSetupWizardActivity extends AppCompatActivity implemen
             logActivityState("onResume");
         }
         super.onResume();
+        if (!mNextStepPrefetched) {
+            mNextStepPrefetched = true;
+            // Wait for the first frame, so that prefetching doesn't compete with it.
+            getWindow().getDecorView().post(() -> {
+                if (!isFinishing()) {
+                    NextStepPrefetcher.prefetch(this, getIntent());
+                }
+            });
+        }
     }
 
     @Override
@@ -257,6 +269,21 @@ public abstract class BaseSetupWizardActivity extends AppCompatActivity implemen
         }
         setResult(resultCode, data);
         Intent intent = WizardManagerHelper.getNextIntent(getIntent(), resultCode, data);
+        if (WizardManager.canResolveNext(intent)) {
+            // Skip the trampoline through WizardManager and start the next action directly.
+            intent = WizardManager.resolveNextIntent(this, intent);
+            if (intent == null) {
+                // End of the wizard
+                return;
+            }
+        }
+        startNextStep(intent);
+    }
+
+    /**
+     * Starts the step {@link #nextAction} resolved to, in a new activity unless overridden.
+     */
+    protected void startNextStep(Intent intent) {
         mNextIntentResultLauncher.launch(intent);
     }
 
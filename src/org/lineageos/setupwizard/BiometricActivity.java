@@ -11,13 +11,14 @@ import static com.google.android.setupcompat.util.ResultCodes.RESULT_SKIP;
 import android.content.Intent;
 import android.provider.Settings;
 
+import org.lineageos.setupwizard.util.DeviceCapabilities;
 import org.lineageos.setupwizard.util.SetupWizardUtils;
 
 public class BiometricActivity extends SubBaseActivity {
 
     @Override
     protected void onStartSubactivity() {
-        if (!SetupWizardUtils.hasBiometric(this)) {
+        if (!DeviceCapabilities.get(this).hasBiometric()) {
             SetupWizardUtils.enableComponent(this, ScreenLockActivity.class);
             finishAction(RESULT_SKIP);
             return;
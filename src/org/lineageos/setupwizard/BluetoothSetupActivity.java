@@ -14,6 +14,7 @@ import android.util.Log;
 
 import androidx.activity.result.ActivityResult;
 
+import org.lineageos.setupwizard.util.DeviceCapabilities;
 import org.lineageos.setupwizard.util.SetupWizardUtils;
 
 public class BluetoothSetupActivity extends SubBaseActivity {
@@ -27,7 +28,7 @@ public class BluetoothSetupActivity extends SubBaseActivity {
 
     @Override
     protected void onStartSubactivity() {
-        if (!SetupWizardUtils.hasLeanback(this) || SetupWizardUtils.isBluetoothDisabled()) {
+        if (!DeviceCapabilities.get(this).hasLeanback() || SetupWizardUtils.isBluetoothDisabled()) {
             finishAction(RESULT_SKIP);
             return;
         }
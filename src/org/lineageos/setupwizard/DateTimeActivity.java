@@ -36,6 +36,7 @@ import org.lineageos.setupwizard.util.SetupWizardUtils;
 import java.util.Calendar;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
 
@@ -51,6 +52,10 @@ public class DateTimeActivity extends BaseSetupWizardActivity implements
     private TextView mDateTextView;
     private TextView mTimeTextView;
 
+    private static final Object sPrefetchLock = new Object();
+    private static List<Map<String, Object>> sPrefetchedZones;
+    private static Locale sPrefetchedZonesLocale;
+
     private final Handler mHandler = new Handler(Looper.getMainLooper());
 
     private final BroadcastReceiver mIntentReceiver = new BroadcastReceiver() {
@@ -185,13 +190,44 @@ public class DateTimeActivity extends BaseSetupWizardActivity implements
         mDateTextView.setText(shortDateFormat.format(now.getTime()));
     }
 
-    private static SimpleAdapter constructTimezoneAdapter(Context context) {
-        final String[] from = new String[]{KEY_DISPLAYNAME, KEY_GMT};
-        final int[] to = new int[]{android.R.id.text1, android.R.id.text2};
+    /**
+     * Builds the sorted timezone list ahead of time, see {@link NextStepPrefetcher}.
+     */
+    static void prefetch(Context context) {
+        final Locale locale = getLocale(context);
+        final List<Map<String, Object>> sortedList = getSortedZonesList(context);
+        synchronized (sPrefetchLock) {
+            sPrefetchedZones = sortedList;
+            sPrefetchedZonesLocale = locale;
+        }
+    }
 
+    private static List<Map<String, Object>> getSortedZonesList(Context context) {
         final TimeZoneComparator comparator = new TimeZoneComparator(KEY_OFFSET);
         final List<Map<String, Object>> sortedList = ZoneGetter.getZonesList(context);
         sortedList.sort(comparator);
+        return sortedList;
+    }
+
+    private static Locale getLocale(Context context) {
+        return context.getResources().getConfiguration().getLocales().get(0);
+    }
+
+    private static SimpleAdapter constructTimezoneAdapter(Context context) {
+        final String[] from = new String[]{KEY_DISPLAYNAME, KEY_GMT};
+        final int[] to = new int[]{android.R.id.text1, android.R.id.text2};
+
+        List<Map<String, Object>> sortedList;
+        synchronized (sPrefetchLock) {
+            // Display names are localized, so a list built for another locale can't be used.
+            sortedList = getLocale(context).equals(sPrefetchedZonesLocale)
+                    ? sPrefetchedZones : null;
+            sPrefetchedZones = null;
+            sPrefetchedZonesLocale = null;
+        }
+        if (sortedList == null) {
+            sortedList = getSortedZonesList(context);
+        }
 
         return new SimpleAdapter(context,
                 sortedList,
@@ -26,6 +26,8 @@ import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
+import org.lineageos.setupwizard.util.HomeWarmUp;
+import org.lineageos.setupwizard.util.SetupCommit;
 import org.lineageos.setupwizard.util.SetupWizardUtils;
 
 public class FinishActivity extends BaseSetupWizardActivity {
@@ -75,6 +77,9 @@ public class FinishActivity extends BaseSetupWizardActivity {
 
         if (sIsFinishing) {
             startFinishSequence();
+        } else {
+            // Usually started from the previous step already.
+            HomeWarmUp.start(this);
         }
     }
 
@@ -130,6 +135,9 @@ public class FinishActivity extends BaseSetupWizardActivity {
         setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_LOCKED);
         hideNextButton();
 
+        // Commit the choices while the outro plays, finishSetupWizard() waits for it.
+        SetupCommit.start(this);
+
         // Begin outro animation.
         if (mRootView.isAttachedToWindow()) {
             mHandler.post(() -> animateOut());
@@ -7,33 +7,34 @@
 package org.lineageos.setupwizard;
 
 import android.app.Activity;
-import android.content.BroadcastReceiver;
 import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
-import android.telephony.SubscriptionInfo;
-import android.telephony.SubscriptionManager;
-import android.telephony.TelephonyManager;
-import android.util.Log;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.View;
 import android.widget.ArrayAdapter;
+import android.widget.EditText;
 import android.widget.NumberPicker;
 import android.widget.Toast;
 
-import com.android.internal.telephony.TelephonyIntents;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
 import com.android.internal.telephony.util.LocaleUtils;
 
 import com.google.android.setupcompat.util.SystemBarHelper;
 
+import org.lineageos.setupwizard.util.DeviceCapabilities;
+import org.lineageos.setupwizard.util.TelephonyState;
+import org.lineageos.setupwizard.widget.LocaleListAdapter;
 import org.lineageos.setupwizard.widget.LocalePicker;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class LocaleActivity extends BaseSetupWizardActivity {
 
@@ -43,34 +44,48 @@ public class LocaleActivity extends BaseSetupWizardActivity {
     private Locale mCurrentLocale;
     private int[] mAdapterIndices;
     private LocalePicker mLanguagePicker;
-    private ExecutorService mFetchUpdateSimLocaleTask;
+    private LocaleListAdapter mLocaleListAdapter;
+    private Future<?> mLoadLocaleListTask;
+    private Future<?> mFetchUpdateSimLocaleTask;
+    // Bumped for every update, so that a superseded update doesn't apply its result.
+    private int mSuggestedLocalesGeneration;
+    // Bumped for every lookup, so that a superseded lookup doesn't apply its result.
+    private int mFetchUpdateSimLocaleGeneration;
     private final Handler mHandler = new Handler(Looper.getMainLooper());
     private boolean mPendingLocaleUpdate;
     private boolean mPaused = true;
+    // Without telephony there is no SIM to suggest a locale, and no state to listen to.
+    private boolean mHasTelephony;
 
     private final Runnable mUpdateLocale = new Runnable() {
         public void run() {
             if (mCurrentLocale != null) {
-                mLanguagePicker.setEnabled(false);
+                setLocaleSelectionEnabled(false);
                 com.android.internal.app.LocalePicker.updateLocale(mCurrentLocale);
+                if (mLocaleListAdapter != null) {
+                    mLocaleListAdapter.setDisplayLocale(mCurrentLocale);
+                }
             }
         }
     };
 
-    private final BroadcastReceiver mSimChangedReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            if (intent.getAction().equals(TelephonyIntents.ACTION_SIM_STATE_CHANGED)) {
-                fetchAndUpdateSimLocale();
-            }
-        }
-    };
+    private final TelephonyState.Listener mTelephonyStateListener =
+            state -> fetchAndUpdateSimLocale();
+
+    // Registered for as long as the locale list exists, the suggestions follow the SIM.
+    private final TelephonyState.Listener mSuggestedLocalesListener =
+            state -> updateSuggestedLocales();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         SystemBarHelper.setBackButtonVisible(getWindow(), true);
         setNextText(R.string.next);
+        mHasTelephony = DeviceCapabilities.get(this).hasTelephony();
+        if (useLocaleList()) {
+            loadLocaleList();
+            return;
+        }
         mLanguagePicker = findViewById(R.id.locale_list);
         mLanguagePicker.setNextRight(getNextButton().getId());
         mLanguagePicker.requestFocus();
@@ -84,27 +99,40 @@ public class LocaleActivity extends BaseSetupWizardActivity {
     public void onPause() {
         super.onPause();
         mPaused = true;
-        unregisterReceiver(mSimChangedReceiver);
+        if (mHasTelephony) {
+            TelephonyState.get(this).removeListener(mTelephonyStateListener);
+        }
     }
 
     @Override
     public void onResume() {
         super.onResume();
         mPaused = false;
-        registerReceiver(mSimChangedReceiver,
-                new IntentFilter(TelephonyIntents.ACTION_SIM_STATE_CHANGED));
-        if (mLanguagePicker != null) {
-            mLanguagePicker.setEnabled(true);
+        if (mHasTelephony) {
+            TelephonyState.get(this).addListener(mTelephonyStateListener);
         }
+        setLocaleSelectionEnabled(true);
         if (mPendingLocaleUpdate) {
             mPendingLocaleUpdate = false;
             fetchAndUpdateSimLocale();
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        cancelFetchUpdateSimLocale();
+        if (mLoadLocaleListTask != null) {
+            mLoadLocaleListTask.cancel(false);
+        }
+        if (mLocaleListAdapter != null && mHasTelephony) {
+            TelephonyState.get(this).removeListener(mSuggestedLocalesListener);
+        }
+    }
+
     @Override
     protected int getLayoutResId() {
-        return R.layout.setup_locale;
+        return useLocaleList() ? R.layout.setup_locale_list : R.layout.setup_locale;
     }
 
     @Override
@@ -135,6 +163,9 @@ public class LocaleActivity extends BaseSetupWizardActivity {
             mAdapterIndices[i] = i;
             labels[i] = localLocaleInfo.getLabel();
         }
+
+        // The picker measures the labels in the background. Until then it shows them at a
+        // width estimated from the longest one.
         mLanguagePicker.setDisplayedValues(labels);
         mLanguagePicker.setMaxValue(labels.length - 1);
         mLanguagePicker.setValue(currentLocaleIndex);
@@ -148,6 +179,117 @@ public class LocaleActivity extends BaseSetupWizardActivity {
         });
     }
 
+    private boolean useLocaleList() {
+        return getResources().getBoolean(R.bool.config_localeList);
+    }
+
+    private void loadLocaleList() {
+        mCurrentLocale = Locale.getDefault();
+        mLocaleListAdapter = new LocaleListAdapter(this, mCurrentLocale, localeInfo -> {
+            ((SetupWizardApp) getApplication()).setIgnoreSimLocale(true);
+            onLocaleChanged(localeInfo.getLocale());
+        });
+        mLocaleListAdapter.setSelectedLocale(mCurrentLocale);
+
+        RecyclerView localeList = findViewById(R.id.locale_list);
+        localeList.setLayoutManager(new LinearLayoutManager(this));
+        localeList.setHasFixedSize(true);
+        localeList.setAdapter(mLocaleListAdapter);
+        localeList.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+                if (newState == RecyclerView.SCROLL_STATE_DRAGGING) {
+                    ((SetupWizardApp) getApplication()).setIgnoreSimLocale(true);
+                }
+            }
+        });
+
+        EditText search = findViewById(R.id.locale_search);
+        search.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                mLocaleListAdapter.setFilter(s);
+            }
+        });
+
+        // Naming and sorting every locale takes a while, don't hold up the first frame for it
+        final Context context = getApplicationContext();
+        final boolean allLocales = getResources().getBoolean(R.bool.config_localeListAllLocales);
+        final Locale displayLocale = mCurrentLocale;
+        mLoadLocaleListTask = SetupWizardApp.getExecutor().submit(() -> {
+            final List<LocaleListAdapter.Group> groups = LocaleListAdapter.loadGroups(context,
+                    allLocales, getSuggestedLocales(context), displayLocale);
+            mHandler.post(() -> {
+                if (!isDestroyed()) {
+                    mLocaleListAdapter.setGroups(groups);
+                }
+            });
+        });
+        if (mHasTelephony) {
+            TelephonyState.get(this).addListener(mSuggestedLocalesListener);
+        }
+        fetchAndUpdateSimLocale();
+    }
+
+    /**
+     * Looks up the suggested locales again in the background, for when the SIM state has been
+     * queried or changed after the locale list started loading.
+     */
+    private void updateSuggestedLocales() {
+        final Context context = getApplicationContext();
+        final int generation = ++mSuggestedLocalesGeneration;
+        SetupWizardApp.getExecutor().execute(() -> {
+            final List<Locale> suggested = getSuggestedLocales(context);
+            mHandler.post(() -> {
+                if (generation == mSuggestedLocalesGeneration && !isDestroyed()) {
+                    mLocaleListAdapter.setSuggestedLocales(suggested);
+                }
+            });
+        });
+    }
+
+    /**
+     * @return The current locale, and the locales the SIM suggests if there is one.
+     */
+    private static List<Locale> getSuggestedLocales(Context context) {
+        final ArrayList<Locale> locales = new ArrayList<>();
+        locales.add(Locale.getDefault());
+        if (!DeviceCapabilities.get(context).hasTelephony()) {
+            return locales;
+        }
+        final TelephonyState telephonyState = TelephonyState.get(context);
+        if (!telephonyState.isSimLocked() && telephonyState.hasActiveSubscription()) {
+            final int mcc = telephonyState.getMcc();
+            if (mcc != TelephonyState.MCC_UNKNOWN) {
+                final Locale mccLocale = LocaleUtils.getLocaleFromMcc(context, mcc, null);
+                if (mccLocale != null) {
+                    locales.add(mccLocale);
+                }
+            }
+            if (telephonyState.getSimLocale() != null) {
+                locales.add(telephonyState.getSimLocale());
+            }
+        }
+        return locales;
+    }
+
+    private void setLocaleSelectionEnabled(boolean enabled) {
+        if (mLanguagePicker != null) {
+            mLanguagePicker.setEnabled(enabled);
+        }
+        if (mLocaleListAdapter != null) {
+            mLocaleListAdapter.setEnabled(enabled);
+        }
+    }
+
     private void setLocaleFromPicker() {
         ((SetupWizardApp) getApplication()).setIgnoreSimLocale(true);
         int i = mAdapterIndices[mLanguagePicker.getValue()];
@@ -157,68 +299,53 @@ public class LocaleActivity extends BaseSetupWizardActivity {
     }
 
     private void onLocaleChanged(Locale paramLocale) {
-        mLanguagePicker.setEnabled(true);
+        setLocaleSelectionEnabled(true);
+        if (mLocaleListAdapter != null) {
+            mLocaleListAdapter.setSelectedLocale(paramLocale);
+        }
         mHandler.removeCallbacks(mUpdateLocale);
         mCurrentLocale = paramLocale;
         mHandler.postDelayed(mUpdateLocale, 1000);
     }
 
     private void fetchAndUpdateSimLocale() {
-        if (((SetupWizardApp) getApplication()).ignoreSimLocale() || isDestroyed()) {
+        if (!mHasTelephony || ((SetupWizardApp) getApplication()).ignoreSimLocale()
+                || isDestroyed()) {
             return;
         }
         if (mPaused) {
             mPendingLocaleUpdate = true;
             return;
         }
-        if (mFetchUpdateSimLocaleTask != null) {
-            mFetchUpdateSimLocaleTask.shutdown();
-        }
-        mFetchUpdateSimLocaleTask = Executors.newSingleThreadExecutor();
-        mFetchUpdateSimLocaleTask.execute(() -> {
+        cancelFetchUpdateSimLocale();
+        final int generation = mFetchUpdateSimLocaleGeneration;
+        mFetchUpdateSimLocaleTask = SetupWizardApp.getExecutor().submit(() -> {
             Locale locale = null;
             Activity activity = LocaleActivity.this;
             if (!activity.isFinishing() || !activity.isDestroyed()) {
-                // If the sim is currently pin locked, return
-                TelephonyManager telephonyManager = (TelephonyManager)
-                        activity.getSystemService(Context.TELEPHONY_SERVICE);
-                int state = telephonyManager.getSimState();
-                if (state == TelephonyManager.SIM_STATE_PIN_REQUIRED ||
-                        state == TelephonyManager.SIM_STATE_PUK_REQUIRED) {
-                    return;
-                }
-
-                final SubscriptionManager subscriptionManager =
-                        activity.getSystemService(SubscriptionManager.class);
-                List<SubscriptionInfo> activeSubs =
-                        subscriptionManager.getActiveSubscriptionInfoList();
-                if (activeSubs == null || activeSubs.isEmpty()) {
+                // If the sim is currently pin locked or there is none, return
+                final TelephonyState telephonyState = TelephonyState.get(activity);
+                if (!telephonyState.isReady() || telephonyState.isSimLocked()
+                        || !telephonyState.hasActiveSubscription()) {
                     return;
                 }
 
                 // Fetch locale for active sim's MCC
-                final String mccString = activeSubs.get(0).getMccString();
-                try {
-                    if (mccString != null && !mccString.isEmpty()) {
-                        int mcc = Integer.parseInt(mccString);
-                        locale = LocaleUtils.getLocaleFromMcc(activity, mcc, null);
-                    } else {
-                        Log.w(TAG, "Unexpected mccString: '" + mccString + "'");
-                    }
-                } catch (NumberFormatException e) {
-                    Log.w(TAG, "mccString not a number: '" + mccString + "'", e);
+                final int mcc = telephonyState.getMcc();
+                if (mcc != TelephonyState.MCC_UNKNOWN) {
+                    locale = LocaleUtils.getLocaleFromMcc(activity, mcc, null);
                 }
 
                 // If that fails, fall back to preferred languages reported
                 // by the sim
                 if (locale == null) {
-                    Locale simLocale = telephonyManager.getSimLocale();
-                    if (simLocale != null) {
-                        locale = simLocale;
-                    }
+                    locale = telephonyState.getSimLocale();
                 }
                 Locale finalLocale = locale;
                 mHandler.post(() -> {
+                    if (generation != mFetchUpdateSimLocaleGeneration) {
+                        return;
+                    }
                     if (finalLocale != null && !finalLocale.equals(mCurrentLocale)) {
                         if (!((SetupWizardApp) getApplication()).ignoreSimLocale()
                                 && !isDestroyed()) {
@@ -233,4 +360,12 @@ public class LocaleActivity extends BaseSetupWizardActivity {
             }
         });
     }
+
+    private void cancelFetchUpdateSimLocale() {
+        mFetchUpdateSimLocaleGeneration++;
+        if (mFetchUpdateSimLocaleTask != null) {
+            mFetchUpdateSimLocaleTask.cancel(false);
+            mFetchUpdateSimLocaleTask = null;
+        }
+    }
 }
@@ -17,6 +17,7 @@ import static org.lineageos.setupwizard.SetupWizardApp.EXTRA_PREFS_SHOW_SKIP_TV;
 import android.content.Intent;
 import android.os.Bundle;
 
+import org.lineageos.setupwizard.util.DeviceCapabilities;
 import org.lineageos.setupwizard.util.SetupWizardUtils;
 
 public class NetworkSetupActivity extends SubBaseActivity {
@@ -25,7 +26,8 @@ public class NetworkSetupActivity extends SubBaseActivity {
 
     @Override
     protected void onStartSubactivity() {
-        if ((!SetupWizardUtils.hasWifi(this) && !SetupWizardUtils.hasTelephony(this)) ||
+        final DeviceCapabilities capabilities = DeviceCapabilities.get(this);
+        if ((!capabilities.hasWifi() && !capabilities.hasTelephony()) ||
                 SetupWizardUtils.isNetworkConnectedToInternetViaEthernet(this)) {
             finishAction(RESULT_SKIP);
             return;
@@ -0,0 +1,83 @@
+/*
+ * SPDX-FileCopyrightText: 2026 The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.lineageos.setupwizard;
+
+import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ActivityInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.util.Log;
+
+import org.lineageos.setupwizard.util.HomeWarmUp;
+import org.lineageos.setupwizard.wizardmanager.WizardManager;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Prepares the step the wizard most likely moves on to while the current step is displayed.
+ *
+ * The predicted activity class is loaded and initialized, and steps with expensive data of
+ * their own warm it up through a static prefetch method, so that pressing next only has to
+ * start the activity.
+ */
+final class NextStepPrefetcher {
+
+    private static final String TAG = NextStepPrefetcher.class.getSimpleName();
+
+    // Keyed by activity class name.
+    private static final Map<String, Consumer<Context>> sPrefetchers = Map.of(
+            DateTimeActivity.class.getName(), DateTimeActivity::prefetch,
+            FinishActivity.class.getName(), HomeWarmUp::start,
+            NavigationSettingsActivity.class.getName(), NavigationSettingsFragment::prefetch);
+
+    private NextStepPrefetcher() {
+    }
+
+    /**
+     * Starts preparing the step after the one started with {@code currentIntent}, if it can be
+     * predicted. Must be called on the main thread.
+     */
+    static void prefetch(Context context, Intent currentIntent) {
+        final Intent nextIntent = WizardManager.getPredictedNextIntent(currentIntent);
+        if (nextIntent == null) {
+            return;
+        }
+        final Context appContext = context.getApplicationContext();
+        SetupWizardApp.getExecutor().execute(() -> prefetchInBackground(appContext, nextIntent));
+    }
+
+    private static void prefetchInBackground(Context context, Intent nextIntent) {
+        final ResolveInfo info = context.getPackageManager().resolveActivity(nextIntent,
+                PackageManager.MATCH_DEFAULT_ONLY);
+        final ActivityInfo activityInfo = info != null ? info.activityInfo : null;
+        if (activityInfo == null || !context.getPackageName().equals(activityInfo.packageName)) {
+            // Other packages start in their own process, nothing to warm up here.
+            return;
+        }
+        if (LOGV) {
+            Log.v(TAG, "prefetch " + activityInfo.name);
+        }
+        try {
+            Class.forName(activityInfo.name, true, context.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            Log.w(TAG, "Unable to load " + activityInfo.name, e);
+            return;
+        }
+        final Consumer<Context> prefetcher = sPrefetchers.get(activityInfo.name);
+        if (prefetcher != null) {
+            try {
+                prefetcher.accept(context);
+            } catch (RuntimeException e) {
+                // Only an optimization, the step loads its data itself when it starts.
+                Log.w(TAG, "Prefetching " + activityInfo.name + " failed", e);
+            }
+        }
+    }
+}
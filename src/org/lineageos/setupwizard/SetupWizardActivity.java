@@ -6,9 +6,6 @@
 
 package org.lineageos.setupwizard;
 
-import static android.content.Intent.FLAG_GRANT_READ_URI_PERMISSION;
-
-import static org.lineageos.setupwizard.SetupWizardApp.ACTION_LOAD;
 import static org.lineageos.setupwizard.SetupWizardApp.EXTRA_SCRIPT_URI;
 import static org.lineageos.setupwizard.SetupWizardApp.EXTRA_WIZARD_BUNDLE;
 import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
@@ -20,6 +17,7 @@ import android.util.Log;
 
 import androidx.appcompat.app.AppCompatActivity;
 
+import org.lineageos.setupwizard.util.DeviceCapabilities;
 import org.lineageos.setupwizard.util.SetupWizardUtils;
 import org.lineageos.setupwizard.wizardmanager.WizardManager;
 
@@ -32,26 +30,31 @@ public class SetupWizardActivity extends AppCompatActivity {
         if (LOGV) {
             Log.v(TAG, "onCreate savedInstanceState=" + savedInstanceState);
         }
-        if (SetupWizardUtils.hasLeanback(this) && SetupWizardUtils.hasGMS(this)) {
+        final DeviceCapabilities capabilities = DeviceCapabilities.get(this);
+        if (capabilities.hasLeanback() && capabilities.hasGMS()) {
             finish();
             return;
         }
+        // Only needed for steps that go through the WizardManager activity to move on, which
+        // happens long after this change is applied. Loading the script is done right here.
         SetupWizardUtils.enableComponent(this, WizardManager.class);
-        Intent intent = new Intent(ACTION_LOAD);
-        Bundle wizardBundle = new Bundle();
+        final String scriptUri;
         if (SetupWizardUtils.isOwner()) {
-            wizardBundle.putString(EXTRA_SCRIPT_URI, getString(R.string.lineage_wizard_script_uri));
-        } else if (SetupWizardUtils.isManagedProfile(this)) {
-            wizardBundle.putString(EXTRA_SCRIPT_URI,
-                    getString(R.string.lineage_wizard_script_managed_profile_uri));
+            scriptUri = getString(R.string.lineage_wizard_script_uri);
+        } else if (capabilities.isManagedProfile()) {
+            scriptUri = getString(R.string.lineage_wizard_script_managed_profile_uri);
         } else {
-            wizardBundle.putString(EXTRA_SCRIPT_URI,
-                    getString(R.string.lineage_wizard_script_user_uri));
+            scriptUri = getString(R.string.lineage_wizard_script_user_uri);
+        }
+        Bundle wizardBundle = new Bundle();
+        wizardBundle.putString(EXTRA_SCRIPT_URI, scriptUri);
+        Intent extras = new Intent();
+        extras.putExtra(EXTRA_WIZARD_BUNDLE, wizardBundle);
+        Intent intent = WizardManager.resolveLoadIntent(this, scriptUri, extras);
+        if (intent != null) {
+            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            startActivity(intent);
         }
-        intent.putExtra(EXTRA_WIZARD_BUNDLE, wizardBundle);
-        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | FLAG_GRANT_READ_URI_PERMISSION);
-        intent.setPackage(getPackageName());
-        startActivity(intent);
         finish();
     }
 }
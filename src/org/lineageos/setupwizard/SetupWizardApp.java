@@ -11,10 +11,21 @@ import android.app.StatusBarManager;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.Process;
 import android.provider.Settings;
 import android.util.Log;
 
+import org.lineageos.setupwizard.util.ComponentStateWriter;
+import org.lineageos.setupwizard.util.DeviceCapabilities;
 import org.lineageos.setupwizard.util.SetupWizardUtils;
+import org.lineageos.setupwizard.util.TaskPipeline;
+import org.lineageos.setupwizard.util.TelephonyState;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class SetupWizardApp extends Application {
 
@@ -46,8 +57,13 @@ public class SetupWizardApp extends Application {
 
     public static final int RADIO_READY_TIMEOUT = 10 * 1000;
 
+    private static final int BACKGROUND_THREADS = 2;
+    private static final long BACKGROUND_THREAD_KEEP_ALIVE_SECONDS = 30;
+
     private static StatusBarManager sStatusBarManager;
 
+    private static final ThreadPoolExecutor sExecutor = createExecutor();
+
     private boolean mIsRadioReady = false;
     private boolean mIgnoreSimLocale = false;
 
@@ -62,15 +78,54 @@ public class SetupWizardApp extends Application {
         if (LOGV) {
             Log.v(TAG, "onCreate()");
         }
-        sStatusBarManager = SetupWizardUtils.disableStatusBar(this);
+        TaskPipeline pipeline = new TaskPipeline("startup", sExecutor);
+        // The status bar must not be usable once the first step is visible.
+        pipeline.runBlocking("disableStatusBar",
+                () -> sStatusBarManager = SetupWizardUtils.disableStatusBar(this));
+        // With GMS its setup wizard takes over as home, so ours must be out of the way before
+        // anything resolves the home activity. Only the GMS lookup itself runs here, the rest of
+        // the capabilities snapshot is filled in by the stages below.
+        pipeline.runBlocking("disableHome", () -> {
+            if (DeviceCapabilities.lookUpGms(this)) {
+                SetupWizardUtils.disableHome(this);
+                ComponentStateWriter.flush(this);
+            }
+        });
         mHandler.postDelayed(mRadioTimeoutRunnable, SetupWizardApp.RADIO_READY_TIMEOUT);
-        if (SetupWizardUtils.hasGMS(this)) {
-            SetupWizardUtils.disableHome(this);
-            if (SetupWizardUtils.isOwner()) {
+        pipeline.runAsync("telephonyState", () -> {
+            if (DeviceCapabilities.get(this).hasTelephony()) {
+                TelephonyState.get(this);
+            }
+        });
+        pipeline.runAsync("enableAssistedGps", () -> {
+            if (DeviceCapabilities.get(this).hasGMS() && SetupWizardUtils.isOwner()) {
                 Settings.Global.putInt(getContentResolver(),
                         Settings.Global.ASSISTED_GPS_ENABLED, 1);
             }
-        }
+        });
+    }
+
+    /**
+     * @return The executor for background work of the whole app.
+     */
+    public static ExecutorService getExecutor() {
+        return sExecutor;
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+        final AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(BACKGROUND_THREADS,
+                BACKGROUND_THREADS, BACKGROUND_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(() -> {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }, TAG + "-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     public static StatusBarManager getStatusBarManager() {
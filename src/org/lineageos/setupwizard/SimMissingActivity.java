@@ -12,30 +12,69 @@ import android.annotation.Nullable;
 import android.content.Intent;
 import android.os.Bundle;
 
-import org.lineageos.setupwizard.util.SetupWizardUtils;
+import org.lineageos.setupwizard.util.DeviceCapabilities;
+import org.lineageos.setupwizard.util.TelephonyState;
 
 public class SimMissingActivity extends BaseSetupWizardActivity {
 
+    private TelephonyState mTelephonyState;
+
+    private final TelephonyState.Listener mTelephonyStateListener = state -> {
+        if (state.isReady()) {
+            onTelephonyStateReady();
+        }
+    };
+
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        if (!SetupWizardUtils.simMissing(this) || !SetupWizardUtils.hasTelephony(this)) {
-            // NetworkSetupActivity comes before us. DateTimeActivity comes after.
-            // If the user presses the back button on DateTimeActivity, we can only pass along
-            // that information to NetworkSetupActivity if we are still around. But if we finish
-            // here, we're gone, and NetworkSetupActivity will get whatever result we give here.
-            // We can't predict the future, but we can reasonably assume that the only way for
-            // NetworkSetupActivity to be reached later is if the user went backwards. So, we
-            // finish this activity faking that the user pressed the back button, which is required
-            // for subactivities like NetworkSetupActivity to work properly on backward navigation.
-            // TODO: Resolve all this.
-            finishAction(RESULT_SKIP, new Intent().putExtra("onBackPressed", true));
+        if (!DeviceCapabilities.get(this).hasTelephony()) {
+            skip();
+            return;
+        }
+        mTelephonyState = TelephonyState.get(this);
+        if (mTelephonyState.isReady()) {
+            // The usual case, queried since the app started.
+            onTelephonyStateReady();
+            return;
+        }
+        // Only right after the process started. Show the page, but keep it from moving on
+        // until the first query tells whether it's needed at all.
+        setNextAllowed(false);
+        mTelephonyState.addListener(mTelephonyStateListener);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (mTelephonyState != null) {
+            mTelephonyState.removeListener(mTelephonyStateListener);
+        }
+    }
+
+    private void onTelephonyStateReady() {
+        mTelephonyState.removeListener(mTelephonyStateListener);
+        if (mTelephonyState.hasUsableSim()) {
+            skip();
             return;
         }
         getGlifLayout().setDescriptionText(getString(R.string.sim_missing_summary));
         setNextAllowed(true);
     }
 
+    private void skip() {
+        // NetworkSetupActivity comes before us. DateTimeActivity comes after.
+        // If the user presses the back button on DateTimeActivity, we can only pass along
+        // that information to NetworkSetupActivity if we are still around. But if we finish
+        // here, we're gone, and NetworkSetupActivity will get whatever result we give here.
+        // We can't predict the future, but we can reasonably assume that the only way for
+        // NetworkSetupActivity to be reached later is if the user went backwards. So, we
+        // finish this activity faking that the user pressed the back button, which is required
+        // for subactivities like NetworkSetupActivity to work properly on backward navigation.
+        // TODO: Resolve all this.
+        finishAction(RESULT_SKIP, new Intent().putExtra("onBackPressed", true));
+    }
+
     @Override
     protected int getLayoutResId() {
         return R.layout.sim_missing_page;
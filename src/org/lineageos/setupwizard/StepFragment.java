@@ -0,0 +1,155 @@
+/*
+ * SPDX-FileCopyrightText: 2026 The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.lineageos.setupwizard;
+
+import static android.app.Activity.RESULT_OK;
+import static android.view.View.INVISIBLE;
+
+import static com.google.android.setupcompat.util.ResultCodes.RESULT_SKIP;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.content.Intent;
+import android.graphics.drawable.Drawable;
+import android.os.Bundle;
+import android.text.TextUtils;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.fragment.app.Fragment;
+
+import com.android.settingslib.Utils;
+
+import com.google.android.setupdesign.GlifLayout;
+
+import org.lineageos.setupwizard.NavigationLayout.NavigationBarListener;
+
+/**
+ * A wizard step that can be shown by a {@link StepHostActivity}, either as the only content of
+ * its own activity or swapped in place of the previous step, see
+ * {@link StepHostActivity#isSingleActivityHost}.
+ */
+public abstract class StepFragment extends Fragment implements NavigationBarListener {
+
+    static final String ARG_STEP_INTENT = "stepIntent";
+
+    private NavigationLayout mNavigationBar;
+
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container,
+            @Nullable Bundle savedInstanceState) {
+        return inflater.inflate(getLayoutResId(), container, false);
+    }
+
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        if (getTitleResId() != -1) {
+            final CharSequence headerText = TextUtils.expandTemplate(getText(getTitleResId()));
+            getGlifLayout().setHeaderText(headerText);
+        }
+        if (getIconResId() != -1) {
+            final GlifLayout layout = getGlifLayout();
+            final Drawable icon = requireContext().getDrawable(getIconResId()).mutate();
+            icon.setTintList(Utils.getColorAccent(layout.getContext()));
+            layout.setIcon(icon);
+        }
+        final View navigationBar = view.findViewById(R.id.navigation_bar);
+        mNavigationBar = navigationBar instanceof NavigationLayout
+                ? (NavigationLayout) navigationBar : null;
+        if (mNavigationBar != null) {
+            mNavigationBar.setNavigationBarListener(this);
+        }
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        mNavigationBar = null;
+    }
+
+    /**
+     * @return The intent this step was started with, as the activity of an activity-per-step
+     * flow would have gotten it.
+     */
+    public Intent getStepIntent() {
+        return requireArguments().getParcelable(ARG_STEP_INTENT, Intent.class);
+    }
+
+    protected final StepHostActivity getStepHost() {
+        return (StepHostActivity) requireActivity();
+    }
+
+    protected final <T extends View> T findViewById(int id) {
+        return requireView().findViewById(id);
+    }
+
+    protected GlifLayout getGlifLayout() {
+        return requireView().requireViewById(R.id.setup_wizard_layout);
+    }
+
+    protected final void setNextAllowed(boolean allowed) {
+        if (mNavigationBar != null) {
+            mNavigationBar.getNextButton().setEnabled(allowed);
+        }
+    }
+
+    protected final void setNextText(int resId) {
+        if (mNavigationBar != null) {
+            mNavigationBar.getNextButton().setText(resId);
+        }
+    }
+
+    protected final void hideNextButton() {
+        if (mNavigationBar != null) {
+            mNavigationBar.getNextButton().setVisibility(INVISIBLE);
+        }
+    }
+
+    protected void onNextPressed() {
+        nextAction(RESULT_OK);
+    }
+
+    protected void onSkipPressed() {
+        nextAction(RESULT_SKIP);
+    }
+
+    @Override
+    public void onNavigateNext() {
+        onNextPressed();
+    }
+
+    @Override
+    public void onSkip() {
+        onSkipPressed();
+    }
+
+    /**
+     * Moves on to the next step, keeping this one on the back stack.
+     */
+    protected final void nextAction(int resultCode) {
+        getStepHost().nextStep(resultCode, null, false);
+    }
+
+    /**
+     * Moves on to the next step, leaving this one behind as an activity calling
+     * {@link BaseSetupWizardActivity#finishAction} would.
+     */
+    protected final void finishAction(int resultCode) {
+        getStepHost().nextStep(resultCode, null, true);
+    }
+
+    protected abstract int getLayoutResId();
+
+    protected int getTitleResId() {
+        return -1;
+    }
+
+    protected int getIconResId() {
+        return -1;
+    }
+}
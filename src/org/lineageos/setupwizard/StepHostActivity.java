@@ -0,0 +1,172 @@
+/*
+ * SPDX-FileCopyrightText: 2026 The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.lineageos.setupwizard;
+
+import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
+
+import android.annotation.Nullable;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.util.Log;
+
+import androidx.activity.OnBackPressedCallback;
+import androidx.fragment.app.FragmentManager;
+import androidx.fragment.app.FragmentTransaction;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * An activity showing a {@link StepFragment}.
+ *
+ * With {@code config_singleActivityHost} set, following steps that have a fragment version are
+ * swapped in place instead of being started as activities of their own, and back pops them
+ * again. Steps without one are started as activities, as usual. The host keeps its intent in
+ * sync with the displayed step, so that the wizard script decides where to go next exactly as
+ * in the activity-per-step flow.
+ */
+public abstract class StepHostActivity extends BaseSetupWizardActivity {
+
+    // Keyed by the action of the step, as the wizard script starts it.
+    private static final Map<String, Supplier<StepFragment>> sSteps = Map.of(
+            "org.lineageos.setupwizard.LINEAGE_LOCATION_SETTINGS", LocationSettingsFragment::new,
+            "org.lineageos.setupwizard.LINEAGE_RECOVERY_UPDATE", UpdateRecoveryFragment::new,
+            "org.lineageos.setupwizard.LINEAGE_SETTINGS", LineageSettingsFragment::new,
+            "org.lineageos.setupwizard.NAVIGATION_SETTINGS", NavigationSettingsFragment::new,
+            "org.lineageos.setupwizard.THEME_SETTINGS", ThemeSettingsFragment::new);
+
+    private final OnBackPressedCallback mPopStepCallback = new OnBackPressedCallback(false) {
+        @Override
+        public void handleOnBackPressed() {
+            getSupportFragmentManager().popBackStack();
+        }
+    };
+
+    private boolean mFinishingStep;
+    private boolean mSwappedStep;
+
+    @Override
+    protected void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        final FragmentManager fragmentManager = getSupportFragmentManager();
+        // Added after the callback of the base class, so it gets to handle back first.
+        getOnBackPressedDispatcher().addCallback(this, mPopStepCallback);
+        fragmentManager.addOnBackStackChangedListener(this::onStepsChanged);
+        if (savedInstanceState == null) {
+            final StepFragment step = createFirstStep();
+            step.setArguments(newStepArguments(getIntent()));
+            fragmentManager.beginTransaction()
+                    .replace(R.id.step_container, step)
+                    .commitNow();
+        } else {
+            onStepsChanged();
+        }
+    }
+
+    /**
+     * @return The step this activity shows when started.
+     */
+    protected abstract StepFragment createFirstStep();
+
+    @Override
+    protected int getLayoutResId() {
+        return R.layout.step_host;
+    }
+
+    /**
+     * Moves on from the displayed step, see {@link StepFragment#nextAction} and
+     * {@link StepFragment#finishAction}.
+     */
+    final void nextStep(int resultCode, Intent data, boolean finishStep) {
+        mFinishingStep = finishStep;
+        mSwappedStep = false;
+        try {
+            nextAction(resultCode, data);
+        } finally {
+            mFinishingStep = false;
+        }
+        if (finishStep && !mSwappedStep) {
+            final FragmentManager fragmentManager = getSupportFragmentManager();
+            if (fragmentManager.getBackStackEntryCount() > 0) {
+                fragmentManager.popBackStack();
+            } else {
+                finish();
+            }
+        }
+    }
+
+    @Override
+    protected void startNextStep(Intent intent) {
+        final StepFragment step = isSingleActivityHost(this) ? createStep(intent) : null;
+        if (step == null) {
+            super.startNextStep(intent);
+            return;
+        }
+        if (LOGV) {
+            Log.v(TAG, "startNextStep in place " + intent + " finishing=" + mFinishingStep);
+        }
+        mSwappedStep = true;
+        final Intent stepIntent = decorateIntent(intent);
+        step.setArguments(newStepArguments(stepIntent));
+
+        final FragmentManager fragmentManager = getSupportFragmentManager();
+        final boolean hasPreviousStep = fragmentManager.getBackStackEntryCount() > 0;
+        if (mFinishingStep && hasPreviousStep) {
+            // Drop the finishing step, so that back skips it like a finished activity.
+            fragmentManager.popBackStack();
+        }
+        final FragmentTransaction transaction = fragmentManager.beginTransaction()
+                .setReorderingAllowed(true)
+                .setTransition(FragmentTransaction.TRANSIT_FRAGMENT_FADE)
+                .replace(R.id.step_container, step);
+        if (!mFinishingStep || hasPreviousStep) {
+            transaction.addToBackStack(null);
+        }
+        transaction.commit();
+
+        // The step reads it as soon as it moves on, which may be before the transaction ran.
+        setIntent(stepIntent);
+        getWindow().getDecorView().post(() -> {
+            if (!isFinishing()) {
+                NextStepPrefetcher.prefetch(this, stepIntent);
+            }
+        });
+    }
+
+    private void onStepsChanged() {
+        final StepFragment step = (StepFragment) getSupportFragmentManager()
+                .findFragmentById(R.id.step_container);
+        if (step != null) {
+            setIntent(step.getStepIntent());
+        }
+        mPopStepCallback.setEnabled(getSupportFragmentManager().getBackStackEntryCount() > 0);
+    }
+
+    /**
+     * @return Whether steps are swapped in place rather than started as activities.
+     */
+    static boolean isSingleActivityHost(Context context) {
+        return context.getResources().getBoolean(R.bool.config_singleActivityHost);
+    }
+
+    private StepFragment createStep(Intent intent) {
+        if (intent.getComponent() != null || intent.getAction() == null) {
+            return null;
+        }
+        if (intent.getPackage() != null && !intent.getPackage().equals(getPackageName())) {
+            return null;
+        }
+        final Supplier<StepFragment> step = sSteps.get(intent.getAction());
+        return step != null ? step.get() : null;
+    }
+
+    private static Bundle newStepArguments(Intent stepIntent) {
+        final Bundle arguments = new Bundle();
+        arguments.putParcelable(StepFragment.ARG_STEP_INTENT, stepIntent);
+        return arguments;
+    }
+}
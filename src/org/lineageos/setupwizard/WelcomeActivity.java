@@ -17,7 +17,7 @@ import android.widget.TextView;
 import com.google.android.setupcompat.template.FooterButtonStyleUtils;
 import com.google.android.setupcompat.util.SystemBarHelper;
 
-import org.lineageos.setupwizard.util.SetupWizardUtils;
+import org.lineageos.setupwizard.util.DeviceCapabilities;
 
 public class WelcomeActivity extends SubBaseActivity {
 
@@ -43,7 +43,7 @@ public class WelcomeActivity extends SubBaseActivity {
 
         FooterButtonStyleUtils.applyPrimaryButtonPartnerResource(this, startButton, true);
 
-        if (SetupWizardUtils.hasTelephony(this)) {
+        if (DeviceCapabilities.get(this).hasTelephony()) {
             setSkipText(R.string.emergency_call);
             emergButton.setOnClickListener(
                     view -> startSubactivity(new Intent(ACTION_EMERGENCY_DIAL)));
@@ -54,7 +54,7 @@ public class WelcomeActivity extends SubBaseActivity {
         }
 
         TextView welcomeTitle = findViewById(R.id.welcome_title);
-        if (SetupWizardUtils.isManagedProfile(this)) {
+        if (DeviceCapabilities.get(this).isManagedProfile()) {
             welcomeTitle.setText(getString(R.string.setup_managed_profile_welcome_message));
         } else {
             welcomeTitle.setText(getString(R.string.setup_welcome_message,
@@ -0,0 +1,123 @@
+/*
+ * SPDX-FileCopyrightText: 2026 The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.lineageos.setupwizard.util;
+
+import static android.content.pm.PackageManager.COMPONENT_ENABLED_STATE_DEFAULT;
+import static android.content.pm.PackageManager.DONT_KILL_APP;
+
+import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.pm.PackageManager.ComponentEnabledSetting;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.lineageos.setupwizard.SetupWizardApp;
+import org.lineageos.setupwizard.wizardmanager.ActionAvailability;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Applies component enabled state changes in the background.
+ *
+ * Changes are queued, and all changes queued by the time the background thread gets to them
+ * are applied in a single PackageManager call, where only the last requested state of each
+ * component counts. {@link ActionAvailability} learns about a change when it is queued, so
+ * wizard transitions never wait for it. Code that depends on the system seeing a change, like
+ * starting an activity that was just enabled, must use {@link #runWhenApplied}.
+ */
+public final class ComponentStateWriter {
+
+    private static final String TAG = ComponentStateWriter.class.getSimpleName();
+
+    private static final Object sLock = new Object();
+    // Held while writing, so that writes are applied in the order they were queued.
+    private static final Object sWriteLock = new Object();
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    // Guarded by sLock
+    private static final LinkedHashMap<ComponentName, Integer> sPending = new LinkedHashMap<>();
+    private static boolean sFlushScheduled;
+
+    private ComponentStateWriter() {
+    }
+
+    /**
+     * Queues a change of the enabled state of a component.
+     */
+    public static void setEnabledState(Context context, ComponentName componentName,
+            int enabledState) {
+        final Context appContext = context.getApplicationContext();
+        ActionAvailability.onComponentStateQueued(appContext, componentName, enabledState);
+        synchronized (sLock) {
+            sPending.put(componentName, enabledState);
+            if (sFlushScheduled) {
+                return;
+            }
+            sFlushScheduled = true;
+        }
+        SetupWizardApp.getExecutor().execute(() -> flush(appContext));
+    }
+
+    /**
+     * Runs <code>callback</code> on the main thread once every change queued before this call
+     * is in effect.
+     */
+    public static void runWhenApplied(Context context, Runnable callback) {
+        final Context appContext = context.getApplicationContext();
+        SetupWizardApp.getExecutor().execute(() -> {
+            flush(appContext);
+            sMainHandler.post(callback);
+        });
+    }
+
+    /**
+     * Applies all queued changes on the calling thread, and waits for changes another thread is
+     * currently applying. Does PackageManager calls, so only for the few places where a change
+     * must be in effect before anything else runs, like disabling home at startup. Everything
+     * else should use {@link #runWhenApplied}.
+     */
+    public static void flush(Context context) {
+        synchronized (sWriteLock) {
+            final ArrayList<ComponentEnabledSetting> settings = new ArrayList<>();
+            final ArrayList<ComponentName> defaultStates = new ArrayList<>();
+            synchronized (sLock) {
+                for (Map.Entry<ComponentName, Integer> entry : sPending.entrySet()) {
+                    settings.add(new ComponentEnabledSetting(entry.getKey(), entry.getValue(),
+                            DONT_KILL_APP));
+                    if (entry.getValue() == COMPONENT_ENABLED_STATE_DEFAULT) {
+                        defaultStates.add(entry.getKey());
+                    }
+                }
+                sPending.clear();
+                sFlushScheduled = false;
+            }
+            if (settings.isEmpty()) {
+                return;
+            }
+            if (LOGV) {
+                Log.v(TAG, "Applying " + settings.size() + " component state changes on "
+                        + Thread.currentThread().getName());
+            }
+            try {
+                context.getPackageManager().setComponentEnabledSettings(settings);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Unable to apply component state changes " + settings, e);
+                // The optimistic updates of ActionAvailability no longer hold.
+                ActionAvailability.invalidate();
+                return;
+            }
+            if (!defaultStates.isEmpty()) {
+                ActionAvailability.invalidate(defaultStates);
+            }
+        }
+    }
+}
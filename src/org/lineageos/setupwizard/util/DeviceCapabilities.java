@@ -0,0 +1,232 @@
+/*
+ * SPDX-FileCopyrightText: 2026 The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.lineageos.setupwizard.util;
+
+import static android.content.pm.PackageManager.COMPONENT_ENABLED_STATE_DISABLED;
+
+import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.content.res.Resources;
+import android.hardware.biometrics.BiometricManager;
+import android.os.PatternMatcher;
+import android.os.UserManager;
+import android.util.Log;
+
+import java.io.File;
+
+/**
+ * Snapshot of what the device supports, computed once per process.
+ *
+ * Hardware features, the user type and the recovery updater cannot change while the wizard
+ * runs, so each is queried on first use and kept. Whether GMS is set up is dropped whenever
+ * one of its packages changes, and biometric support is queried again as long as the biometric
+ * HAL reports itself unavailable.
+ */
+public final class DeviceCapabilities {
+
+    private static final String TAG = DeviceCapabilities.class.getSimpleName();
+
+    private static final String GMS_PACKAGE = "com.google.android.gms";
+    private static final String GMS_SUW_PACKAGE = "com.google.android.setupwizard";
+    private static final String GMS_TV_SUW_PACKAGE = "com.google.android.tungsten.setupwraith";
+    private static final String UPDATER_PACKAGE = "org.lineageos.updater";
+
+    private static final String UPDATE_RECOVERY_EXEC = "/vendor/bin/install-recovery.sh";
+    private static final String CONFIG_HIDE_RECOVERY_UPDATE = "config_hideRecoveryUpdate";
+
+    private static final Object sLock = new Object();
+    private static DeviceCapabilities sInstance;
+
+    private final Context mContext;
+
+    // Fixed for the process, computed on first use. Racing callers compute the same value.
+    private volatile Boolean mHasWifi;
+    private volatile Boolean mHasTelephony;
+    private volatile Boolean mHasLeanback;
+    private volatile Boolean mHasRecoveryUpdater;
+    private volatile Boolean mIsManagedProfile;
+
+    // May change during setup, computed on demand. Guarded by sLock.
+    private Boolean mHasGms;
+    // Bumped whenever mHasGms is dropped, so that a query started before is not published.
+    private int mGmsGeneration;
+    private Boolean mHasBiometric;
+
+    private final BroadcastReceiver mGmsPackageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (LOGV) {
+                Log.v(TAG, "onReceive " + intent);
+            }
+            synchronized (sLock) {
+                mHasGms = null;
+                mGmsGeneration++;
+            }
+        }
+    };
+
+    private DeviceCapabilities(Context context) {
+        mContext = context;
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addDataScheme("package");
+        filter.addDataSchemeSpecificPart(GMS_PACKAGE, PatternMatcher.PATTERN_LITERAL);
+        // Both setup wizards, so that registering doesn't have to wait for the leanback query.
+        filter.addDataSchemeSpecificPart(GMS_SUW_PACKAGE, PatternMatcher.PATTERN_LITERAL);
+        filter.addDataSchemeSpecificPart(GMS_TV_SUW_PACKAGE, PatternMatcher.PATTERN_LITERAL);
+        context.registerReceiver(mGmsPackageReceiver, filter);
+    }
+
+    /**
+     * @return The snapshot, creating it first if this is the first call in this process. Values
+     * are only queried once asked for.
+     */
+    public static DeviceCapabilities get(Context context) {
+        synchronized (sLock) {
+            if (sInstance == null) {
+                sInstance = new DeviceCapabilities(context.getApplicationContext());
+            }
+            return sInstance;
+        }
+    }
+
+    /**
+     * Looks up whether GMS is set up without creating the snapshot or caching the result, for
+     * callers that must not wait for anything else, such as the start of the process.
+     */
+    public static boolean lookUpGms(Context context) {
+        return queryGms(context, context.getPackageManager().hasSystemFeature(
+                PackageManager.FEATURE_LEANBACK));
+    }
+
+    public boolean hasWifi() {
+        Boolean hasWifi = mHasWifi;
+        if (hasWifi == null) {
+            hasWifi = mHasWifi = hasSystemFeature(PackageManager.FEATURE_WIFI);
+        }
+        return hasWifi;
+    }
+
+    public boolean hasTelephony() {
+        Boolean hasTelephony = mHasTelephony;
+        if (hasTelephony == null) {
+            hasTelephony = mHasTelephony = hasSystemFeature(PackageManager.FEATURE_TELEPHONY);
+        }
+        return hasTelephony;
+    }
+
+    public boolean hasLeanback() {
+        Boolean hasLeanback = mHasLeanback;
+        if (hasLeanback == null) {
+            hasLeanback = mHasLeanback = hasSystemFeature(PackageManager.FEATURE_LEANBACK);
+        }
+        return hasLeanback;
+    }
+
+    public boolean hasRecoveryUpdater() {
+        Boolean hasRecoveryUpdater = mHasRecoveryUpdater;
+        if (hasRecoveryUpdater == null) {
+            hasRecoveryUpdater = mHasRecoveryUpdater =
+                    queryRecoveryUpdater(mContext.getPackageManager());
+        }
+        return hasRecoveryUpdater;
+    }
+
+    public boolean isManagedProfile() {
+        Boolean isManagedProfile = mIsManagedProfile;
+        if (isManagedProfile == null) {
+            isManagedProfile = mIsManagedProfile =
+                    mContext.getSystemService(UserManager.class).isManagedProfile();
+        }
+        return isManagedProfile;
+    }
+
+    public boolean hasGMS() {
+        final int generation;
+        synchronized (sLock) {
+            if (mHasGms != null) {
+                return mHasGms;
+            }
+            generation = mGmsGeneration;
+        }
+        // Query without holding the lock, concurrent callers may query as well.
+        final boolean hasGms = queryGms(mContext, hasLeanback());
+        synchronized (sLock) {
+            if (generation == mGmsGeneration) {
+                mHasGms = hasGms;
+            }
+        }
+        return hasGms;
+    }
+
+    public boolean hasBiometric() {
+        synchronized (sLock) {
+            if (mHasBiometric != null) {
+                return mHasBiometric;
+            }
+        }
+        BiometricManager biometricManager = mContext.getSystemService(BiometricManager.class);
+        int result = biometricManager.canAuthenticate(
+                BiometricManager.Authenticators.BIOMETRIC_WEAK);
+        final boolean hasBiometric = switch (result) {
+            case BiometricManager.BIOMETRIC_ERROR_NONE_ENROLLED,
+                    BiometricManager.BIOMETRIC_SUCCESS -> true;
+            default -> false;
+        };
+        // The HAL may just not be up yet, ask again next time.
+        if (result != BiometricManager.BIOMETRIC_ERROR_HW_UNAVAILABLE) {
+            synchronized (sLock) {
+                mHasBiometric = hasBiometric;
+            }
+        }
+        return hasBiometric;
+    }
+
+    private boolean hasSystemFeature(String feature) {
+        return mContext.getPackageManager().hasSystemFeature(feature);
+    }
+
+    private static boolean queryGms(Context context, boolean hasLeanback) {
+        String gmsSuwPackage = hasLeanback ? GMS_TV_SUW_PACKAGE : GMS_SUW_PACKAGE;
+
+        if (SetupWizardUtils.isPackageInstalled(context, GMS_PACKAGE) &&
+                SetupWizardUtils.isPackageInstalled(context, gmsSuwPackage)) {
+            PackageManager packageManager = context.getPackageManager();
+            final int state = packageManager.getApplicationEnabledSetting(gmsSuwPackage);
+            if (LOGV) {
+                Log.v(TAG, gmsSuwPackage + " state = " + state);
+            }
+            return state != COMPONENT_ENABLED_STATE_DISABLED;
+        }
+        return false;
+    }
+
+    private static boolean queryRecoveryUpdater(PackageManager pm) {
+        boolean fileExists = new File(UPDATE_RECOVERY_EXEC).exists();
+        if (!fileExists) {
+            return false;
+        }
+
+        boolean featureHidden = false;
+        try {
+            Resources updaterResources = pm.getResourcesForApplication(UPDATER_PACKAGE);
+            int res = updaterResources.getIdentifier(
+                    CONFIG_HIDE_RECOVERY_UPDATE, "bool", UPDATER_PACKAGE);
+            featureHidden = updaterResources.getBoolean(res);
+        } catch (PackageManager.NameNotFoundException | Resources.NotFoundException ignored) {
+        }
+        return !featureHidden;
+    }
+}
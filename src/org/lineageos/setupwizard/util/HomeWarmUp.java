@@ -0,0 +1,166 @@
+/*
+ * SPDX-FileCopyrightText: 2026 The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.lineageos.setupwizard.util;
+
+import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
+
+import android.app.ActivityManager;
+import android.app.WallpaperManager;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.lineageos.setupwizard.R;
+import org.lineageos.setupwizard.SetupWizardApp;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Best-effort warm-up of what the device shows right after setup.
+ *
+ * Once setup finishes, the real launcher has to cold start and the wallpaper has to be loaded.
+ * Reading the resource table and dex files of the launcher and the wallpaper file ahead of time
+ * brings them into the page cache, so that the launcher's cold start does not wait for storage.
+ * Nothing is decoded here, and low RAM devices skip the warm-up, as the pages would likely be
+ * evicted again before they are needed.
+ */
+public final class HomeWarmUp {
+
+    private static final String TAG = HomeWarmUp.class.getSimpleName();
+
+    private static final int READ_BUFFER_SIZE = 128 * 1024;
+
+    private static final AtomicBoolean sStarted = new AtomicBoolean();
+
+    private HomeWarmUp() {
+    }
+
+    /**
+     * Starts the warm-up on the app executor, unless disabled by config_warmUpHome, running on a
+     * low RAM device or already started in this process.
+     */
+    public static void start(Context context) {
+        if (!context.getResources().getBoolean(R.bool.config_warmUpHome)
+                || context.getSystemService(ActivityManager.class).isLowRamDevice()
+                || !sStarted.compareAndSet(false, true)) {
+            return;
+        }
+        final Context appContext = context.getApplicationContext();
+        SetupWizardApp.getExecutor().execute(() -> warmUp(appContext));
+    }
+
+    private static void warmUp(Context context) {
+        final long start = SystemClock.elapsedRealtime();
+        final String homePackage = getHomePackage(context);
+        if (homePackage != null) {
+            warmUpPackage(context, homePackage);
+        }
+        warmUpWallpaper(context);
+        Log.i(TAG, "Warmed up home package " + homePackage + " and wallpaper in "
+                + (SystemClock.elapsedRealtime() - start) + "ms");
+    }
+
+    /**
+     * @return The package that will handle HOME once our home activity is disabled.
+     */
+    private static String getHomePackage(Context context) {
+        final PackageManager pm = context.getPackageManager();
+        final ArrayList<ResolveInfo> homeActivities = new ArrayList<>();
+        final ComponentName preferred = pm.getHomeActivities(homeActivities);
+        if (preferred != null && !context.getPackageName().equals(preferred.getPackageName())) {
+            return preferred.getPackageName();
+        }
+        ResolveInfo best = null;
+        for (ResolveInfo info : homeActivities) {
+            if (context.getPackageName().equals(info.activityInfo.packageName)) {
+                continue;
+            }
+            if (best == null || info.priority > best.priority) {
+                best = info;
+            }
+        }
+        return best != null ? best.activityInfo.packageName : null;
+    }
+
+    private static void warmUpPackage(Context context, String packageName) {
+        final PackageManager pm = context.getPackageManager();
+        final ApplicationInfo info;
+        try {
+            info = pm.getApplicationInfo(packageName, 0);
+        } catch (PackageManager.NameNotFoundException e) {
+            return;
+        }
+        final byte[] buffer = new byte[READ_BUFFER_SIZE];
+        readStartupEntries(info.sourceDir, buffer);
+        if (info.splitSourceDirs != null) {
+            for (String splitSourceDir : info.splitSourceDirs) {
+                readStartupEntries(splitSourceDir, buffer);
+            }
+        }
+    }
+
+    private static void warmUpWallpaper(Context context) {
+        // The file only, decoding it would just keep a full size bitmap in this process.
+        try (ParcelFileDescriptor pfd = WallpaperManager.getInstance(context)
+                .getWallpaperFile(WallpaperManager.FLAG_SYSTEM)) {
+            if (pfd == null) {
+                return;
+            }
+            try (InputStream in = new FileInputStream(pfd.getFileDescriptor())) {
+                readFully(in, new byte[READ_BUFFER_SIZE]);
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Unable to read wallpaper", e);
+        }
+    }
+
+    /**
+     * Reads the entries of an APK that a cold start loads first, the resource table and the dex
+     * files, leaving out assets, native libraries and the rest of the resources.
+     */
+    private static void readStartupEntries(String path, byte[] buffer) {
+        try (ZipFile apk = new ZipFile(path)) {
+            final Enumeration<? extends ZipEntry> entries = apk.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                if (!isStartupEntry(entry.getName())) {
+                    continue;
+                }
+                if (LOGV) {
+                    Log.v(TAG, "readStartupEntries " + path + "!/" + entry.getName());
+                }
+                try (InputStream in = apk.getInputStream(entry)) {
+                    readFully(in, buffer);
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read " + path, e);
+        }
+    }
+
+    private static boolean isStartupEntry(String name) {
+        return name.equals("resources.arsc")
+                || (name.startsWith("classes") && name.endsWith(".dex") && name.indexOf('/') < 0);
+    }
+
+    private static void readFully(InputStream in, byte[] buffer) throws IOException {
+        while (in.read(buffer) != -1) {
+            // Only the page cache matters
+        }
+    }
+}
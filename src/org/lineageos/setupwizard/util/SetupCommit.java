@@ -0,0 +1,217 @@
+/*
+ * SPDX-FileCopyrightText: 2026 The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.lineageos.setupwizard.util;
+
+import static org.lineageos.setupwizard.SetupWizardApp.DISABLE_NAV_KEYS;
+import static org.lineageos.setupwizard.SetupWizardApp.ENABLE_RECOVERY_UPDATE;
+import static org.lineageos.setupwizard.SetupWizardApp.KEY_SEND_METRICS;
+import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
+import static org.lineageos.setupwizard.SetupWizardApp.NAVIGATION_OPTION_KEY;
+import static org.lineageos.setupwizard.SetupWizardApp.UPDATE_RECOVERY_PROP;
+
+import android.app.WallpaperManager;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.om.IOverlayManager;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ServiceManager;
+import android.os.SystemProperties;
+import android.os.UserHandle;
+import android.provider.Settings;
+import android.util.Log;
+
+import org.lineageos.setupwizard.SetupWizardApp;
+import org.lineageos.setupwizard.wizardmanager.WizardManager;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import lineageos.providers.LineageSettings;
+
+/**
+ * Applies the choices collected during setup, then marks the device provisioned.
+ *
+ * The choices don't depend on each other, so they are written in parallel on the app
+ * executor. Only once all of them are done, successfully or not, DEVICE_PROVISIONED and
+ * USER_SETUP_COMPLETE are set, so that nothing observing those sees a half configured device.
+ */
+public final class SetupCommit {
+
+    private static final String TAG = SetupCommit.class.getSimpleName();
+
+    // How long to wait for a started commit before marking the device provisioned anyway.
+    private static final long AWAIT_TIMEOUT_MS = 2000;
+
+    // The commit started for the finish of setup, dropped only if it failed so that it can be
+    // started again. Only accessed on the main thread.
+    static Commit sCommit;
+
+    // Marks the device provisioned, replaced by tests.
+    static Consumer<Context> sMarkSetupComplete = SetupCommit::markSetupComplete;
+
+    private SetupCommit() {
+    }
+
+    /**
+     * Starts the commit, unless it has been started already and did not fail. Must be called
+     * on the main thread, after all choices have been made.
+     *
+     * @return Completes once the device is marked provisioned.
+     */
+    public static CompletableFuture<Void> start(Context context) {
+        if (sCommit != null) {
+            return sCommit.mFuture;
+        }
+        if (LOGV) {
+            Log.v(TAG, "start");
+        }
+        final Context appContext = context.getApplicationContext();
+        // Later changes to the shared bundle are not part of this commit.
+        final Bundle settings = new Bundle(SetupWizardApp.getSettingsBundle());
+        final TaskPipeline pipeline = new TaskPipeline("commit", SetupWizardApp.getExecutor());
+        final CompletableFuture<?>[] writes = {
+                pipeline.runAsync("metrics", () -> handleEnableMetrics(appContext, settings)),
+                pipeline.runAsync("navKeys", () -> handleNavKeys(appContext, settings)),
+                pipeline.runAsync("recoveryUpdate", () -> handleRecoveryUpdate(settings)),
+                pipeline.runAsync("navigationOption", () -> handleNavigationOption(settings)),
+                pipeline.runAsync("forgetLoadedWallpaper",
+                        () -> WallpaperManager.getInstance(appContext).forgetLoadedWallpaper()),
+                pipeline.runAsync("clearScriptCache",
+                        () -> WizardManager.clearScriptCache(appContext)),
+        };
+        final Commit commit = new Commit();
+        commit.mFuture = pipeline.runAfterAsync("setupComplete",
+                () -> commit.markSetupComplete(appContext), writes);
+        sCommit = commit;
+        return commit.mFuture;
+    }
+
+    /**
+     * Runs {@code then} on the main thread once the commit is done, starting it if needed. If
+     * it doesn't finish within {@link #AWAIT_TIMEOUT_MS}, marks the device provisioned on the
+     * main thread and runs {@code then} right after, leaving the writes still in progress to
+     * finish in the background. If marking the device provisioned failed in the background,
+     * it is tried again on the main thread before {@code then} runs, and a later
+     * {@link #start} begins a new commit. Must be called on the main thread.
+     */
+    public static void await(Context context, Runnable then) {
+        final Handler handler = new Handler(Looper.getMainLooper());
+        final Context appContext = context.getApplicationContext();
+        final CompletableFuture<Void> future = start(context);
+        final Commit commit = sCommit;
+        final AtomicBoolean done = new AtomicBoolean();
+        final Runnable fallback = () -> {
+            if (done.compareAndSet(false, true)) {
+                Log.w(TAG, "Commit did not finish within " + AWAIT_TIMEOUT_MS
+                        + "ms, marking setup complete without waiting for it");
+                commit.markSetupComplete(appContext);
+                then.run();
+            }
+        };
+        handler.postDelayed(fallback, AWAIT_TIMEOUT_MS);
+        future.whenComplete((result, e) -> handler.post(() -> {
+            if (e != null) {
+                Log.e(TAG, "Commit failed, marking setup complete on the main thread", e);
+                if (sCommit == commit) {
+                    sCommit = null;
+                }
+                commit.markSetupComplete(appContext);
+            }
+            if (done.compareAndSet(false, true)) {
+                handler.removeCallbacks(fallback);
+                then.run();
+            }
+        }));
+    }
+
+    static final class Commit {
+        CompletableFuture<Void> mFuture;
+        // Set by whichever marks the device provisioned first, the commit or the fallback.
+        // Cleared again if that failed.
+        private final AtomicBoolean mSetupMarked = new AtomicBoolean();
+
+        void markSetupComplete(Context context) {
+            if (mSetupMarked.compareAndSet(false, true)) {
+                try {
+                    sMarkSetupComplete.accept(context);
+                } catch (RuntimeException e) {
+                    mSetupMarked.set(false);
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static void markSetupComplete(Context context) {
+        ContentResolver contentResolver = context.getContentResolver();
+        Settings.Global.putInt(contentResolver,
+                Settings.Global.DEVICE_PROVISIONED, 1);
+        final int userSetupComplete =
+                Settings.Secure.getInt(contentResolver, Settings.Secure.USER_SETUP_COMPLETE, 0);
+        final DeviceCapabilities capabilities = DeviceCapabilities.get(context);
+        if (userSetupComplete != 0 && !capabilities.isManagedProfile()) {
+            Log.e(TAG, "finishSetupWizard, but userSetupComplete=" + userSetupComplete + "! "
+                    + "This should not happen!");
+        }
+        Settings.Secure.putInt(contentResolver,
+                Settings.Secure.USER_SETUP_COMPLETE, 1);
+        if (capabilities.hasLeanback()) {
+            Settings.Secure.putInt(contentResolver,
+                    Settings.Secure.TV_USER_SETUP_COMPLETE, 1);
+        }
+    }
+
+    private static void handleEnableMetrics(Context context, Bundle settings) {
+        if (settings.containsKey(KEY_SEND_METRICS)) {
+            LineageSettings.Secure.putInt(context.getContentResolver(),
+                    LineageSettings.Secure.STATS_COLLECTION,
+                    settings.getBoolean(KEY_SEND_METRICS)
+                            ? 1 : 0);
+        }
+    }
+
+    private static void handleNavKeys(Context context, Bundle settings) {
+        if (settings.containsKey(DISABLE_NAV_KEYS)) {
+            writeDisableNavkeysOption(context, settings.getBoolean(DISABLE_NAV_KEYS));
+        }
+    }
+
+    private static void handleRecoveryUpdate(Bundle settings) {
+        if (settings.containsKey(ENABLE_RECOVERY_UPDATE)) {
+            boolean update = settings.getBoolean(ENABLE_RECOVERY_UPDATE);
+
+            SystemProperties.set(UPDATE_RECOVERY_PROP, String.valueOf(update));
+        }
+    }
+
+    private static void handleNavigationOption(Bundle settings) {
+        if (settings.containsKey(NAVIGATION_OPTION_KEY)) {
+            IOverlayManager overlayManager = IOverlayManager.Stub.asInterface(
+                    ServiceManager.getService(Context.OVERLAY_SERVICE));
+            String selectedNavMode = settings.getString(NAVIGATION_OPTION_KEY);
+
+            try {
+                overlayManager.setEnabledExclusiveInCategory(selectedNavMode,
+                        UserHandle.USER_CURRENT);
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    private static void writeDisableNavkeysOption(Context context, boolean enabled) {
+        final boolean virtualKeysEnabled = LineageSettings.System.getIntForUser(
+                context.getContentResolver(), LineageSettings.System.FORCE_SHOW_NAVBAR, 0,
+                UserHandle.USER_CURRENT) != 0;
+        if (enabled != virtualKeysEnabled) {
+            LineageSettings.System.putIntForUser(context.getContentResolver(),
+                    LineageSettings.System.FORCE_SHOW_NAVBAR, enabled ? 1 : 0,
+                    UserHandle.USER_CURRENT);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * SPDX-FileCopyrightText: 2026 The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.lineageos.setupwizard.util;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Runs the stages of a multi-step operation like application startup, either on the calling
+ * thread when they must finish before anything else happens, or on a background executor once
+ * the stages they depend on are done. Logs when each stage started relative to the pipeline
+ * and how long it took.
+ */
+public final class TaskPipeline {
+
+    private static final String TAG = TaskPipeline.class.getSimpleName();
+
+    private final String mName;
+    private final Executor mExecutor;
+    private final long mStartTime = SystemClock.elapsedRealtime();
+
+    public TaskPipeline(String name, Executor executor) {
+        mName = name;
+        mExecutor = executor;
+    }
+
+    /**
+     * Runs a stage on the calling thread.
+     */
+    public void runBlocking(String name, Runnable stage) {
+        run(name, stage);
+    }
+
+    /**
+     * Runs a stage on the executor once all of its dependencies have completed. The stage is
+     * skipped if any dependency failed.
+     */
+    public CompletableFuture<Void> runAsync(String name, Runnable stage,
+            CompletableFuture<?>... dependencies) {
+        return supplyAsync(name, () -> {
+            stage.run();
+            return null;
+        }, dependencies);
+    }
+
+    /**
+     * Runs a stage on the executor once all of its dependencies have completed, whether they
+     * succeeded or not.
+     */
+    public CompletableFuture<Void> runAfterAsync(String name, Runnable stage,
+            CompletableFuture<?>... dependencies) {
+        return CompletableFuture.allOf(dependencies)
+                .handle((ignored, e) -> null)
+                .thenApplyAsync(ignored -> {
+                    run(name, stage);
+                    return null;
+                }, mExecutor);
+    }
+
+    /**
+     * Like {@link #runAsync}, for stages whose result later stages depend on.
+     */
+    public <T> CompletableFuture<T> supplyAsync(String name, Supplier<T> stage,
+            CompletableFuture<?>... dependencies) {
+        return CompletableFuture.allOf(dependencies)
+                .thenApplyAsync(ignored -> run(name, stage), mExecutor);
+    }
+
+    private void run(String name, Runnable stage) {
+        run(name, () -> {
+            stage.run();
+            return null;
+        });
+    }
+
+    private <T> T run(String name, Supplier<T> stage) {
+        final long start = SystemClock.elapsedRealtime();
+        try {
+            return stage.get();
+        } catch (RuntimeException e) {
+            Log.e(TAG, mName + ": stage " + name + " failed", e);
+            throw e;
+        } finally {
+            final long end = SystemClock.elapsedRealtime();
+            Log.i(TAG, mName + ": stage " + name + " on " + Thread.currentThread().getName()
+                    + " started at +" + (start - mStartTime) + "ms, took " + (end - start)
+                    + "ms");
+        }
+    }
+}
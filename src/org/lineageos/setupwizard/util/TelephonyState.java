@@ -0,0 +1,303 @@
+/*
+ * SPDX-FileCopyrightText: 2026 The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.lineageos.setupwizard.util;
+
+import static android.telephony.TelephonyManager.PHONE_TYPE_GSM;
+
+import static com.android.internal.telephony.PhoneConstants.LTE_ON_CDMA_TRUE;
+import static com.android.internal.telephony.PhoneConstants.LTE_ON_CDMA_UNKNOWN;
+
+import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.Looper;
+import android.sysprop.TelephonyProperties;
+import android.telephony.SubscriptionInfo;
+import android.telephony.SubscriptionManager;
+import android.telephony.TelephonyManager;
+import android.util.Log;
+
+import com.android.internal.telephony.TelephonyIntents;
+
+import org.lineageos.setupwizard.SetupWizardApp;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Process-wide model of the SIM state, kept current in the background.
+ *
+ * The SIM and subscription state is queried on the app executor whenever it changes, so that
+ * steps can read it on the main thread without any binder calls. Until the first query is done,
+ * {@link #isReady()} returns false and listeners are told once it is.
+ */
+public final class TelephonyState {
+
+    private static final String TAG = TelephonyState.class.getSimpleName();
+
+    public static final int MCC_UNKNOWN = -1;
+
+    // SIM state changes come in bursts while a SIM is loaded or swapped, query once they settle.
+    private static final long REFRESH_DEBOUNCE_MS = 250;
+
+    /**
+     * Notified on the main thread whenever the state changes.
+     */
+    public interface Listener {
+        void onTelephonyStateChanged(TelephonyState state);
+    }
+
+    private static final Object sLock = new Object();
+    private static TelephonyState sInstance;
+
+    private static final Snapshot NOT_READY = new Snapshot(false, true, false, false,
+            MCC_UNKNOWN, null);
+
+    private final Context mContext;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final CopyOnWriteArrayList<Listener> mListeners = new CopyOnWriteArrayList<>();
+    // Held while querying, so that an older result never replaces a newer one.
+    private final Object mRefreshLock = new Object();
+
+    private volatile Snapshot mSnapshot = NOT_READY;
+
+    private final Runnable mRefreshRunnable =
+            () -> SetupWizardApp.getExecutor().execute(this::refresh);
+
+    private final BroadcastReceiver mSimStateReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (LOGV) {
+                Log.v(TAG, "onReceive " + intent);
+            }
+            scheduleRefresh();
+        }
+    };
+
+    private final SubscriptionManager.OnSubscriptionsChangedListener mSubscriptionsListener =
+            new SubscriptionManager.OnSubscriptionsChangedListener() {
+                @Override
+                public void onSubscriptionsChanged() {
+                    scheduleRefresh();
+                }
+            };
+
+    private TelephonyState(Context context) {
+        mContext = context;
+        context.registerReceiver(mSimStateReceiver,
+                new IntentFilter(TelephonyIntents.ACTION_SIM_STATE_CHANGED));
+        SubscriptionManager sm = context.getSystemService(SubscriptionManager.class);
+        if (sm != null) {
+            sm.addOnSubscriptionsChangedListener(SetupWizardApp.getExecutor(),
+                    mSubscriptionsListener);
+        }
+        // Registering triggers a refresh as well, but don't delay the first answer for that.
+        SetupWizardApp.getExecutor().execute(this::refresh);
+    }
+
+    /**
+     * @return The model, starting it first if this is the first call in this process.
+     */
+    public static TelephonyState get(Context context) {
+        synchronized (sLock) {
+            if (sInstance == null) {
+                sInstance = new TelephonyState(context.getApplicationContext());
+            }
+            return sInstance;
+        }
+    }
+
+    /**
+     * Must be called on the main thread.
+     */
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    /**
+     * Must be called on the main thread.
+     */
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * @return Whether the SIM state has been queried at least once.
+     */
+    public boolean isReady() {
+        return mSnapshot.mReady;
+    }
+
+    /**
+     * @return Whether there is a SIM the device can use, GSM or LTE on CDMA. True if telephony
+     * is not available at all, or not queried yet.
+     */
+    public boolean hasUsableSim() {
+        return mSnapshot.mHasUsableSim;
+    }
+
+    /**
+     * @return Whether the default SIM waits for its PIN or PUK.
+     */
+    public boolean isSimLocked() {
+        return mSnapshot.mSimLocked;
+    }
+
+    public boolean hasActiveSubscription() {
+        return mSnapshot.mHasActiveSubscription;
+    }
+
+    /**
+     * @return The MCC of the first active subscription, or {@link #MCC_UNKNOWN}.
+     */
+    public int getMcc() {
+        return mSnapshot.mMcc;
+    }
+
+    /**
+     * @return The preferred locale reported by the SIM, or null.
+     */
+    public Locale getSimLocale() {
+        return mSnapshot.mSimLocale;
+    }
+
+    private void scheduleRefresh() {
+        mHandler.removeCallbacks(mRefreshRunnable);
+        mHandler.postDelayed(mRefreshRunnable, REFRESH_DEBOUNCE_MS);
+    }
+
+    private void refresh() {
+        synchronized (mRefreshLock) {
+            final Snapshot snapshot = query();
+            if (snapshot.equals(mSnapshot)) {
+                return;
+            }
+            if (LOGV) {
+                Log.v(TAG, "refresh " + snapshot);
+            }
+            mSnapshot = snapshot;
+        }
+        mHandler.post(() -> {
+            for (Listener listener : mListeners) {
+                listener.onTelephonyStateChanged(this);
+            }
+        });
+    }
+
+    private Snapshot query() {
+        TelephonyManager tm = mContext.getSystemService(TelephonyManager.class);
+        SubscriptionManager sm = mContext.getSystemService(SubscriptionManager.class);
+        if (tm == null || sm == null) {
+            return new Snapshot(true, true, false, false, MCC_UNKNOWN, null);
+        }
+        final int state = tm.getSimState();
+        final boolean simLocked = state == TelephonyManager.SIM_STATE_PIN_REQUIRED
+                || state == TelephonyManager.SIM_STATE_PUK_REQUIRED;
+        List<SubscriptionInfo> subs = sm.getActiveSubscriptionInfoList();
+        if (subs == null || subs.isEmpty()) {
+            return new Snapshot(true, false, simLocked, false, MCC_UNKNOWN, null);
+        }
+        boolean hasUsableSim = false;
+        for (SubscriptionInfo sub : subs) {
+            int simState = tm.getSimState(sub.getSimSlotIndex());
+            if (LOGV) {
+                Log.v(TAG, "getSimState(" + sub.getSubscriptionId() + ") == " + simState);
+            }
+            if (simState != -1) {
+                final int subId = sub.getSubscriptionId();
+                final TelephonyManager subTm = tm.createForSubscriptionId(subId);
+                if (isGSM(subTm) || isLteOnCdma(subTm, subId)) {
+                    hasUsableSim = true;
+                    break;
+                }
+            }
+        }
+        final int mcc = parseMcc(subs.get(0).getMccString());
+        final Locale simLocale = simLocked ? null : tm.getSimLocale();
+        return new Snapshot(true, hasUsableSim, simLocked, true, mcc, simLocale);
+    }
+
+    private static int parseMcc(String mccString) {
+        if (mccString == null || mccString.isEmpty()) {
+            Log.w(TAG, "Unexpected mccString: '" + mccString + "'");
+            return MCC_UNKNOWN;
+        }
+        try {
+            return Integer.parseInt(mccString);
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "mccString not a number: '" + mccString + "'", e);
+            return MCC_UNKNOWN;
+        }
+    }
+
+    private static boolean isGSM(TelephonyManager subTelephonyManager) {
+        return subTelephonyManager.getCurrentPhoneType() == PHONE_TYPE_GSM;
+    }
+
+    private static boolean isLteOnCdma(TelephonyManager subTelephonyManager, int subId) {
+        final int lteOnCdmaMode = subTelephonyManager.getLteOnCdmaMode(subId);
+        if (lteOnCdmaMode == LTE_ON_CDMA_UNKNOWN) {
+            return TelephonyProperties.lte_on_cdma_device().orElse(LTE_ON_CDMA_UNKNOWN)
+                    == LTE_ON_CDMA_TRUE;
+        }
+        return lteOnCdmaMode == LTE_ON_CDMA_TRUE;
+    }
+
+    private static final class Snapshot {
+        final boolean mReady;
+        final boolean mHasUsableSim;
+        final boolean mSimLocked;
+        final boolean mHasActiveSubscription;
+        final int mMcc;
+        final Locale mSimLocale;
+
+        Snapshot(boolean ready, boolean hasUsableSim, boolean simLocked,
+                boolean hasActiveSubscription, int mcc, Locale simLocale) {
+            mReady = ready;
+            mHasUsableSim = hasUsableSim;
+            mSimLocked = simLocked;
+            mHasActiveSubscription = hasActiveSubscription;
+            mMcc = mcc;
+            mSimLocale = simLocale;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Snapshot)) {
+                return false;
+            }
+            Snapshot that = (Snapshot) o;
+            return mReady == that.mReady
+                    && mHasUsableSim == that.mHasUsableSim
+                    && mSimLocked == that.mSimLocked
+                    && mHasActiveSubscription == that.mHasActiveSubscription
+                    && mMcc == that.mMcc
+                    && Objects.equals(mSimLocale, that.mSimLocale);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mReady, mHasUsableSim, mSimLocked, mHasActiveSubscription, mMcc,
+                    mSimLocale);
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot{hasUsableSim=" + mHasUsableSim + ", simLocked=" + mSimLocked
+                    + ", hasActiveSubscription=" + mHasActiveSubscription + ", mcc=" + mMcc
+                    + ", simLocale=" + mSimLocale + "}";
+        }
+    }
+}
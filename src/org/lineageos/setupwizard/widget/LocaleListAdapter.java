@@ -0,0 +1,467 @@
+/*
+ * SPDX-FileCopyrightText: 2026 The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.lineageos.setupwizard.widget;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.text.TextUtils;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.android.internal.app.LocaleHelper;
+import com.android.internal.app.LocalePicker.LocaleInfo;
+
+import org.lineageos.setupwizard.R;
+import org.lineageos.setupwizard.SetupWizardApp;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Adapter for choosing a locale from a list, as an alternative to {@link LocalePicker}.
+ *
+ * Locales are grouped by region, with the suggested ones in a group of their own at the top,
+ * and can be filtered by typing part of their name or region. Loading the groups is expensive
+ * with the full ICU locale set, so it is done with {@link #loadGroups} in the background. The
+ * suggested group is rebuilt from the loaded groups when the suggestions change, and the group
+ * titles are localized again when the display locale changes. The shown rows are diffed on the
+ * app executor, so that filtering only rebinds the rows that appear.
+ */
+public class LocaleListAdapter extends ListAdapter<Object, LocaleListAdapter.ViewHolder> {
+
+    private static final int TYPE_HEADER = 0;
+    private static final int TYPE_LOCALE = 1;
+
+    public interface OnLocaleSelectedListener {
+        void onLocaleSelected(LocaleInfo localeInfo);
+    }
+
+    /**
+     * A titled group of locales.
+     */
+    public static final class Group {
+        // The region of the locales, empty for locales without one. Unused when suggested.
+        final String mCountry;
+        final boolean mSuggested;
+        final List<Entry> mEntries = new ArrayList<>();
+        // The locale the title is in.
+        Locale mLocale;
+        String mTitle;
+        // The title normalized, a typed filter is matched against it besides the labels.
+        String mTitleKey;
+
+        Group(String country, boolean suggested) {
+            mCountry = country;
+            mSuggested = suggested;
+        }
+
+        /**
+         * @param localized A context with <code>locale</code> as its locale.
+         */
+        void localize(Context localized, Locale locale) {
+            if (mSuggested) {
+                mTitle = localized.getString(R.string.locale_list_suggested);
+            } else if (mCountry.isEmpty()) {
+                mTitle = localized.getString(R.string.locale_list_no_region);
+            } else {
+                mTitle = new Locale("", mCountry).getDisplayCountry(locale);
+            }
+            mTitleKey = PrefixIndex.normalize(mTitle);
+            mLocale = locale;
+        }
+    }
+
+    private static final class Entry {
+        final LocaleInfo mLocaleInfo;
+        // The label normalized, what a typed filter is matched against.
+        final String mLabelKey;
+        // The group the entry is shown in, and the group of its region. Only differ when
+        // suggested.
+        final Group mGroup;
+        final Group mRegion;
+
+        Entry(LocaleInfo localeInfo, Group region) {
+            mLocaleInfo = localeInfo;
+            mLabelKey = PrefixIndex.normalize(localeInfo.getLabel());
+            mGroup = region;
+            mRegion = region;
+        }
+
+        Entry(Entry entry, Group group) {
+            mLocaleInfo = entry.mLocaleInfo;
+            mLabelKey = entry.mLabelKey;
+            mGroup = group;
+            mRegion = entry.mRegion;
+        }
+
+        boolean matches(String filter) {
+            return mLabelKey.contains(filter) || mRegion.mTitleKey.contains(filter);
+        }
+    }
+
+    /**
+     * The row of a group title, with the title as it was when the rows were built.
+     */
+    private static final class Header {
+        final Group mGroup;
+        final String mTitle;
+
+        Header(Group group) {
+            mGroup = group;
+            mTitle = group.mTitle;
+        }
+    }
+
+    private static final DiffUtil.ItemCallback<Object> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull Object oldRow, @NonNull Object newRow) {
+                    if (oldRow instanceof Header && newRow instanceof Header) {
+                        final Group oldGroup = ((Header) oldRow).mGroup;
+                        final Group newGroup = ((Header) newRow).mGroup;
+                        return oldGroup.mSuggested == newGroup.mSuggested
+                                && oldGroup.mCountry.equals(newGroup.mCountry);
+                    }
+                    if (oldRow instanceof Entry && newRow instanceof Entry) {
+                        final Entry oldEntry = (Entry) oldRow;
+                        final Entry newEntry = (Entry) newRow;
+                        // A locale is shown at most twice, among the suggestions and in its
+                        // region.
+                        return oldEntry.mGroup.mSuggested == newEntry.mGroup.mSuggested
+                                && oldEntry.mLocaleInfo.getLocale().equals(
+                                        newEntry.mLocaleInfo.getLocale());
+                    }
+                    return false;
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull Object oldRow,
+                        @NonNull Object newRow) {
+                    if (oldRow instanceof Header) {
+                        return ((Header) oldRow).mTitle.equals(((Header) newRow).mTitle);
+                    }
+                    // The label of a locale never changes, and the selection is updated by
+                    // setSelectedLocale().
+                    return true;
+                }
+            };
+
+    private final Context mContext;
+    private final OnLocaleSelectedListener mListener;
+
+    private List<Group> mGroups = new ArrayList<>();
+    // The suggestions given after the groups started loading, if any.
+    private Collection<Locale> mSuggested;
+    // The locale of the group titles.
+    private Locale mDisplayLocale;
+    private String mFilter = "";
+    private Locale mSelectedLocale;
+    private boolean mEnabled = true;
+
+    public LocaleListAdapter(Context context, Locale displayLocale,
+            OnLocaleSelectedListener listener) {
+        super(new AsyncDifferConfig.Builder<>(DIFF_CALLBACK)
+                .setBackgroundThreadExecutor(SetupWizardApp.getExecutor())
+                .build());
+        mContext = context;
+        mDisplayLocale = displayLocale;
+        mListener = listener;
+    }
+
+    /**
+     * Loads the locales to choose from, grouped by region. Doesn't touch any views, so it may
+     * be called on any thread.
+     *
+     * @param allLocales    Whether to offer every locale known to ICU, not only those the
+     *                      system has been translated to.
+     * @param suggested     The locales to suggest. A suggested locale without a region
+     *                      suggests its language in every region.
+     * @param displayLocale The locale to title the groups in.
+     */
+    public static List<Group> loadGroups(Context context, boolean allLocales,
+            Collection<Locale> suggested, Locale displayLocale) {
+        final ArrayList<LocaleInfo> localeInfos = new ArrayList<>(
+                com.android.internal.app.LocalePicker.getAllAssetLocales(context, false));
+        if (allLocales) {
+            final HashSet<String> known = new HashSet<>();
+            for (LocaleInfo localeInfo : localeInfos) {
+                known.add(localeInfo.getLocale().toLanguageTag());
+            }
+            for (Locale locale : Locale.getAvailableLocales()) {
+                if (!locale.getLanguage().isEmpty() && known.add(locale.toLanguageTag())) {
+                    localeInfos.add(new LocaleInfo(
+                            LocaleHelper.getDisplayName(locale, locale, true), locale));
+                }
+            }
+        }
+
+        final Collator collator = Collator.getInstance(displayLocale);
+        localeInfos.sort((a, b) -> collator.compare(a.getLabel(), b.getLabel()));
+
+        final Group noRegionGroup = new Group("", false);
+        final HashMap<String, Group> regionGroups = new HashMap<>();
+        for (LocaleInfo localeInfo : localeInfos) {
+            final String country = localeInfo.getLocale().getCountry();
+            final Group group = country.isEmpty() ? noRegionGroup
+                    : regionGroups.computeIfAbsent(country, c -> new Group(c, false));
+            group.mEntries.add(new Entry(localeInfo, group));
+        }
+
+        final ArrayList<Group> groups = new ArrayList<>(regionGroups.size() + 2);
+        groups.addAll(regionGroups.values());
+        if (!noRegionGroup.mEntries.isEmpty()) {
+            groups.add(noRegionGroup);
+        }
+        return localize(context, withSuggestedGroup(groups, suggested), displayLocale);
+    }
+
+    /**
+     * @return <code>groups</code> with their titles in <code>locale</code>, sorted by them,
+     * except for the suggested group at the top and the group without a region at the bottom.
+     */
+    private static List<Group> localize(Context context, List<Group> groups, Locale locale) {
+        Context localized = null;
+        for (Group group : groups) {
+            if (!locale.equals(group.mLocale)) {
+                if (localized == null) {
+                    final Configuration configuration =
+                            new Configuration(context.getResources().getConfiguration());
+                    configuration.setLocale(locale);
+                    localized = context.createConfigurationContext(configuration);
+                }
+                group.localize(localized, locale);
+            }
+        }
+        if (localized == null) {
+            // Already in that locale, and sorted for it
+            return groups;
+        }
+        final Collator collator = Collator.getInstance(locale);
+        final ArrayList<Group> sorted = new ArrayList<>(groups);
+        sorted.sort((a, b) -> {
+            final int result = Integer.compare(getSortRank(a), getSortRank(b));
+            return result != 0 ? result : collator.compare(a.mTitle, b.mTitle);
+        });
+        return sorted;
+    }
+
+    private static int getSortRank(Group group) {
+        if (group.mSuggested) {
+            return 0;
+        }
+        return group.mCountry.isEmpty() ? 2 : 1;
+    }
+
+    /**
+     * @return <code>groups</code> with the suggested group at the top, built from the locales
+     * of the other groups, replacing the previous suggested group if any. The new group has
+     * no title yet, see {@link #localize}.
+     */
+    private static List<Group> withSuggestedGroup(List<Group> groups,
+            Collection<Locale> suggested) {
+        final Group suggestedGroup = new Group("", true);
+        final ArrayList<Group> result = new ArrayList<>(groups.size() + 1);
+        result.add(suggestedGroup);
+        for (Group group : groups) {
+            if (group.mSuggested) {
+                continue;
+            }
+            result.add(group);
+            for (Entry entry : group.mEntries) {
+                if (isSuggested(entry.mLocaleInfo.getLocale(), suggested)) {
+                    suggestedGroup.mEntries.add(new Entry(entry, suggestedGroup));
+                }
+            }
+        }
+        if (suggestedGroup.mEntries.isEmpty()) {
+            result.remove(0);
+        } else {
+            final Collator collator = Collator.getInstance(Locale.getDefault());
+            suggestedGroup.mEntries.sort((a, b) -> collator.compare(a.mLocaleInfo.getLabel(),
+                    b.mLocaleInfo.getLabel()));
+        }
+        return result;
+    }
+
+    private static boolean isSuggested(Locale locale, Collection<Locale> suggested) {
+        for (Locale suggestedLocale : suggested) {
+            if (locale.getLanguage().equals(suggestedLocale.getLanguage())
+                    && (suggestedLocale.getCountry().isEmpty()
+                    || locale.getCountry().equals(suggestedLocale.getCountry()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sets the groups from {@link #loadGroups}. Must be called on the main thread, like all
+     * other methods.
+     */
+    public void setGroups(List<Group> groups) {
+        mGroups = localize(mContext,
+                mSuggested != null ? withSuggestedGroup(groups, mSuggested) : groups,
+                mDisplayLocale);
+        updateRows();
+    }
+
+    /**
+     * Replaces the suggested locales, see {@link #loadGroups}. Only walks the loaded groups,
+     * so it is cheap enough for the main thread.
+     */
+    public void setSuggestedLocales(Collection<Locale> suggested) {
+        if (suggested.equals(mSuggested)) {
+            return;
+        }
+        mSuggested = suggested;
+        if (mGroups.isEmpty()) {
+            // Applied by setGroups(), the groups may have been loaded with older suggestions.
+            return;
+        }
+        mGroups = localize(mContext, withSuggestedGroup(mGroups, suggested), mDisplayLocale);
+        updateRows();
+    }
+
+    /**
+     * Titles the groups in <code>locale</code>, for when the locale of the device changes. Only
+     * walks the loaded groups, so it is cheap enough for the main thread.
+     */
+    public void setDisplayLocale(Locale locale) {
+        if (locale.equals(mDisplayLocale)) {
+            return;
+        }
+        mDisplayLocale = locale;
+        if (mGroups.isEmpty()) {
+            // Applied by setGroups()
+            return;
+        }
+        mGroups = localize(mContext, mGroups, locale);
+        updateRows();
+    }
+
+    /**
+     * Shows only the locales whose name or region contains <code>filter</code>, ignoring case
+     * and diacritics. The suggested locales are only shown without a filter.
+     */
+    public void setFilter(CharSequence filter) {
+        final String normalizedFilter = PrefixIndex.normalize(filter.toString().trim());
+        if (normalizedFilter.equals(mFilter)) {
+            return;
+        }
+        mFilter = normalizedFilter;
+        updateRows();
+    }
+
+    public void setSelectedLocale(Locale locale) {
+        final Locale previous = mSelectedLocale;
+        if (Objects.equals(previous, locale)) {
+            return;
+        }
+        mSelectedLocale = locale;
+        // A locale may be shown twice, among the suggestions and in its region.
+        final List<Object> rows = getCurrentList();
+        for (int i = 0; i < rows.size(); i++) {
+            final Object row = rows.get(i);
+            if (row instanceof Entry) {
+                final Locale rowLocale = ((Entry) row).mLocaleInfo.getLocale();
+                if (rowLocale.equals(previous) || rowLocale.equals(locale)) {
+                    notifyItemChanged(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets whether a locale can be selected.
+     */
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    private void updateRows() {
+        final ArrayList<Object> rows = new ArrayList<>();
+        final boolean filtered = !TextUtils.isEmpty(mFilter);
+        for (Group group : mGroups) {
+            if (filtered && group.mSuggested) {
+                continue;
+            }
+            final int headerPosition = rows.size();
+            for (Entry entry : group.mEntries) {
+                if (filtered && !entry.matches(mFilter)) {
+                    continue;
+                }
+                if (rows.size() == headerPosition) {
+                    rows.add(new Header(group));
+                }
+                rows.add(entry);
+            }
+        }
+        submitList(rows);
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return getItem(position) instanceof Entry ? TYPE_LOCALE : TYPE_HEADER;
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        final LayoutInflater inflater = LayoutInflater.from(parent.getContext());
+        if (viewType == TYPE_HEADER) {
+            final View view = inflater.inflate(R.layout.locale_list_header, parent, false);
+            view.setAccessibilityHeading(true);
+            return new ViewHolder(view);
+        }
+        final ViewHolder holder = new ViewHolder(
+                inflater.inflate(R.layout.locale_list_item, parent, false));
+        holder.itemView.setOnClickListener(v -> {
+            final int position = holder.getBindingAdapterPosition();
+            if (!mEnabled || position == RecyclerView.NO_POSITION) {
+                return;
+            }
+            final LocaleInfo localeInfo = ((Entry) getItem(position)).mLocaleInfo;
+            setSelectedLocale(localeInfo.getLocale());
+            mListener.onLocaleSelected(localeInfo);
+        });
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        final Object row = getItem(position);
+        if (row instanceof Entry) {
+            final LocaleInfo localeInfo = ((Entry) row).mLocaleInfo;
+            holder.mText.setText(localeInfo.getLabel());
+            holder.itemView.setActivated(localeInfo.getLocale().equals(mSelectedLocale));
+        } else {
+            holder.mText.setText(((Header) row).mTitle);
+        }
+    }
+
+    public static final class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView mText;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            mText = itemView.findViewById(R.id.locale);
+        }
+    }
+}
@@ -12,18 +12,19 @@ import android.content.res.ColorStateList;
 import android.content.res.TypedArray;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.Paint.Align;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.text.InputFilter;
 import android.text.InputType;
+import android.text.Layout;
+import android.text.PrecomputedText;
 import android.text.Spanned;
+import android.text.StaticLayout;
+import android.text.TextPaint;
 import android.text.TextUtils;
 import android.text.method.NumberKeyListener;
 import android.util.AttributeSet;
-import android.util.SparseArray;
 import android.util.TypedValue;
 import android.view.KeyEvent;
 import android.view.LayoutInflater;
@@ -49,6 +50,7 @@ import android.widget.TextView;
 import androidx.annotation.IdRes;
 
 import org.lineageos.setupwizard.R;
+import org.lineageos.setupwizard.SetupWizardApp;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -186,6 +188,28 @@ public class LocalePicker extends LinearLayout {
      */
     private final boolean mComputeMaxWidth;
 
+    /**
+     * The width of the widest displayed value as given by the caller, or
+     * {@link #SIZE_UNSPECIFIED} to measure the displayed values.
+     */
+    private int mMaxTextWidthHint = SIZE_UNSPECIFIED;
+
+    /**
+     * The displayed values the max width has been computed for, or is being computed for.
+     */
+    private String[] mMeasuredDisplayedValues;
+
+    /**
+     * Bumped for every computation of the max width, so that a superseded background
+     * measurement doesn't apply its result.
+     */
+    private int mMaxTextWidthGeneration;
+
+    /**
+     * Index for looking up displayed values by typed prefix, built on first use.
+     */
+    private PrefixIndex mDisplayedValuesIndex;
+
     /**
      * The height of the text.
      */
@@ -232,9 +256,30 @@ public class LocalePicker extends LinearLayout {
     private Formatter mFormatter;
 
     /**
-     * Cache for the string representation of selector indices.
+     * The shaped and measured text of each value from {@link #mMinValue} to {@link #mMaxValue},
+     * built once per value, either when it first scrolls into the window or in the background
+     * after the displayed values are set. Null until the first value is needed.
+     */
+    private StaticLayout[] mValueLayouts;
+
+    /**
+     * Bumped whenever {@link #mValueLayouts} is dropped, so that layouts built in the
+     * background for older values are not stored.
      */
-    private final SparseArray<String> mSelectorIndexToStringCache = new SparseArray<>();
+    private int mValueLayoutsGeneration;
+
+    /**
+     * Ring buffer pointing into {@link #mValueLayouts} for the selector indices, null for
+     * indices without text, so that drawing the selector neither shapes text nor allocates. The
+     * text of <code>mSelectorIndices[i]</code> is at
+     * <code>(mSelectorLayoutsStart + i) % length</code>.
+     */
+    private final StaticLayout[] mSelectorLayouts;
+
+    /**
+     * The slot in {@link #mSelectorLayouts} of the first selector index.
+     */
+    private int mSelectorLayoutsStart;
 
     /**
      * The selector indices whose value are show by the selector.
@@ -242,9 +287,14 @@ public class LocalePicker extends LinearLayout {
     private final int[] mSelectorIndices;
 
     /**
-     * The {@link android.graphics.Paint} for drawing the selector.
+     * The {@link android.text.TextPaint} for drawing the selector.
+     */
+    private final TextPaint mSelectorWheelPaint;
+
+    /**
+     * The parameters the text of the selector is precomputed with.
      */
-    private final Paint mSelectorWheelPaint;
+    private final PrecomputedText.Params mSelectorTextParams;
 
     /**
      * The {@link android.graphics.drawable.Drawable} for pressed virtual (increment/decrement)
@@ -504,6 +554,7 @@ public class LocalePicker extends LinearLayout {
         sSelectorMiddleItemIndex = context.getResources().getInteger(R.integer.local_picker_items)
                 / 2;
         mSelectorIndices = new int[sSelectorWheelItemCount];
+        mSelectorLayouts = new StaticLayout[sSelectorWheelItemCount];
         // process style attributes
         TypedArray attributesArray = context.obtainStyledAttributes(
                 attrs, R.styleable.LocalePicker, defStyle, 0);
@@ -629,15 +680,15 @@ public class LocalePicker extends LinearLayout {
         mTextSize = (int) mInputText.getTextSize();
 
         // create the selector wheel paint
-        Paint paint = new Paint();
+        TextPaint paint = new TextPaint();
         paint.setAntiAlias(true);
-        paint.setTextAlign(Align.CENTER);
         paint.setTextSize(mTextSize);
         paint.setTypeface(mInputText.getTypeface());
         ColorStateList colors = mInputText.getTextColors();
         int color = colors.getColorForState(ENABLED_STATE_SET, Color.WHITE);
         paint.setColor(color);
         mSelectorWheelPaint = paint;
+        mSelectorTextParams = new PrecomputedText.Params.Builder(paint).build();
 
         // create the fling and adjust scrollers
         mFlingScroller = new Scroller(getContext(), null, true);
@@ -1121,14 +1172,17 @@ public class LocalePicker extends LinearLayout {
     }
 
     /**
-     * Computes the max width if no such specified as an attribute.
+     * Computes the max width if no such specified as an attribute. The displayed values are
+     * measured in the background, unless a hint was given for them, see
+     * {@link #setDisplayedValues(String[], int)}. Until then the width is estimated.
      */
     private void tryComputeMaxWidth() {
         if (!mComputeMaxWidth) {
             return;
         }
-        int maxTextWidth = 0;
         if (mDisplayedValues == null) {
+            mMeasuredDisplayedValues = null;
+            mMaxTextWidthGeneration++;
             float maxDigitWidth = 0;
             for (int i = 0; i <= 9; i++) {
                 final float digitWidth = mSelectorWheelPaint.measureText(formatNumberWithLocale(i));
@@ -1142,23 +1196,82 @@ public class LocalePicker extends LinearLayout {
                 numberOfDigits++;
                 current = current / 10;
             }
-            maxTextWidth = (int) (numberOfDigits * maxDigitWidth);
-        } else {
-            final int valueCount = mDisplayedValues.length;
-            for (String displayedValue : mDisplayedValues) {
-                final float textWidth = mSelectorWheelPaint.measureText(displayedValue);
-                if (textWidth > maxTextWidth) {
-                    maxTextWidth = (int) textWidth;
+            setMaxTextWidth((int) (numberOfDigits * maxDigitWidth));
+            return;
+        }
+        if (mMeasuredDisplayedValues == mDisplayedValues) {
+            // Measured already, or being measured
+            return;
+        }
+        final String[] displayedValues = mDisplayedValues;
+        mMeasuredDisplayedValues = displayedValues;
+        final int generation = ++mMaxTextWidthGeneration;
+        if (mMaxTextWidthHint != SIZE_UNSPECIFIED) {
+            setMaxTextWidth(mMaxTextWidthHint);
+            return;
+        }
+        // Show the values right away at about the right width, then apply the measured one.
+        setMaxTextWidth(estimateMaxTextWidth(displayedValues));
+        final TextPaint paint = newSelectorPaint();
+        SetupWizardApp.getExecutor().execute(() -> {
+            final int maxTextWidth = measureMaxTextWidth(displayedValues, paint);
+            post(() -> {
+                if (generation == mMaxTextWidthGeneration) {
+                    setMaxTextWidth(maxTextWidth);
                 }
+            });
+        });
+    }
+
+    /**
+     * @return The width of the value with the most characters, which is usually close to that of
+     * the widest value, measuring a single value only.
+     */
+    private int estimateMaxTextWidth(String[] values) {
+        String longest = "";
+        for (String value : values) {
+            if (value.length() > longest.length()) {
+                longest = value;
             }
         }
-        maxTextWidth += mInputText.getPaddingLeft() + mInputText.getPaddingRight();
-        if (mMaxWidth != maxTextWidth) {
-            mMaxWidth = Math.max(maxTextWidth, mMinWidth);
+        return (int) mSelectorWheelPaint.measureText(longest);
+    }
+
+    private void setMaxTextWidth(int maxTextWidth) {
+        final int maxWidth = Math.max(
+                maxTextWidth + mInputText.getPaddingLeft() + mInputText.getPaddingRight(),
+                mMinWidth);
+        if (mMaxWidth != maxWidth) {
+            mMaxWidth = maxWidth;
+            requestLayout();
             invalidate();
         }
     }
 
+    /**
+     * @return A copy of the paint the selector draws its text with. Paint is not thread safe,
+     * so measuring displayed values on another thread must use a copy.
+     */
+    public TextPaint newSelectorPaint() {
+        return new TextPaint(mSelectorWheelPaint);
+    }
+
+    /**
+     * @return The width of the widest of <code>values</code> when drawn with <code>paint</code>,
+     * as expected by {@link #setDisplayedValues(String[], int)}. Doesn't touch the view, so it
+     * may be called on any thread with a paint from {@link #newSelectorPaint()}.
+     */
+    public static int measureMaxTextWidth(String[] values, TextPaint paint) {
+        float maxTextWidth = 0;
+        for (String value : values) {
+            final float textWidth = paint.measureText(value);
+            if (textWidth > maxTextWidth) {
+                maxTextWidth = textWidth;
+            }
+        }
+        return (int) maxTextWidth;
+    }
+
     /**
      * Gets whether the selector wheel wraps when reaching the min/max value.
      *
@@ -1237,6 +1350,7 @@ public class LocalePicker extends LinearLayout {
             throw new IllegalArgumentException("maxValue must be >= 0");
         }
         mMaxValue = maxValue;
+        clearValueLayouts();
         if (mMaxValue < mValue) {
             mValue = mMaxValue;
         }
@@ -1245,6 +1359,7 @@ public class LocalePicker extends LinearLayout {
         initializeSelectorWheelIndices();
         updateInputTextView();
         tryComputeMaxWidth();
+        buildValueLayoutsInBackground();
         invalidate();
     }
 
@@ -1258,10 +1373,28 @@ public class LocalePicker extends LinearLayout {
      *                        {@link #getMaxValue()} - getMinValue() + 1.
      */
     public void setDisplayedValues(String[] displayedValues) {
-        if (mDisplayedValues == displayedValues) {
+        setDisplayedValues(displayedValues, SIZE_UNSPECIFIED);
+    }
+
+    /**
+     * Sets the values to be displayed, along with the width of the widest of them, so that they
+     * need not be measured.
+     *
+     * @param displayedValues  The displayed values.
+     * @param maxTextWidthHint The width in pixels of the widest displayed value when drawn with
+     *                         the text size and typeface of this picker, or -1 to measure the
+     *                         displayed values in the background.
+     * @see #setDisplayedValues(String[])
+     */
+    public void setDisplayedValues(String[] displayedValues, int maxTextWidthHint) {
+        if (mDisplayedValues == displayedValues && mMaxTextWidthHint == maxTextWidthHint) {
             return;
         }
         mDisplayedValues = displayedValues;
+        mMaxTextWidthHint = maxTextWidthHint;
+        mMeasuredDisplayedValues = null;
+        mDisplayedValuesIndex = null;
+        clearValueLayouts();
         if (mDisplayedValues != null) {
             // Allow text entry rather than strictly numeric entry.
             mInputText.setRawInputType(InputType.TYPE_CLASS_TEXT
@@ -1272,6 +1405,7 @@ public class LocalePicker extends LinearLayout {
         updateInputTextView();
         initializeSelectorWheelIndices();
         tryComputeMaxWidth();
+        buildValueLayoutsInBackground();
     }
 
     @Override
@@ -1315,17 +1449,26 @@ public class LocalePicker extends LinearLayout {
         }
 
         // draw the selector wheel
-        int[] selectorIndices = mSelectorIndices;
-        for (int i = 0; i < selectorIndices.length; i++) {
-            int selectorIndex = selectorIndices[i];
-            String scrollSelectorValue = mSelectorIndexToStringCache.get(selectorIndex);
+        StaticLayout[] selectorLayouts = mSelectorLayouts;
+        int slot = mSelectorLayoutsStart;
+        for (int i = 0; i < selectorLayouts.length; i++) {
+            StaticLayout scrollSelectorLayout = selectorLayouts[slot];
+            if (++slot == selectorLayouts.length) {
+                slot = 0;
+            }
             // Do not draw the middle item if input is visible since the input
             // is shown only if the wheel is static and it covers the middle
             // item. Otherwise, if the user starts editing the text via the
             // IME he may see a dimmed version of the old value intermixed
             // with the new one.
-            if (i != sSelectorMiddleItemIndex || mInputText.getVisibility() != VISIBLE) {
-                canvas.drawText(scrollSelectorValue, x, y, mSelectorWheelPaint);
+            if (scrollSelectorLayout != null
+                    && (i != sSelectorMiddleItemIndex || mInputText.getVisibility() != VISIBLE)) {
+                // The layout is as wide as its text, center it on x and put its baseline on y
+                canvas.save();
+                canvas.translate(x - scrollSelectorLayout.getWidth() / 2f,
+                        y - scrollSelectorLayout.getLineBaseline(0));
+                scrollSelectorLayout.draw(canvas);
+                canvas.restore();
             }
             y += mSelectorElementHeight;
         }
@@ -1409,10 +1552,11 @@ public class LocalePicker extends LinearLayout {
     }
 
     /**
-     * Resets the selector indices and clear the cached string representation of these indices.
+     * Resets the selector indices and points the ring buffer at the text layouts of these
+     * indices.
      */
     private void initializeSelectorWheelIndices() {
-        mSelectorIndexToStringCache.clear();
+        mSelectorLayoutsStart = 0;
         int[] selectorIndices = mSelectorIndices;
         int current = getValue();
         for (int i = 0; i < mSelectorIndices.length; i++) {
@@ -1421,7 +1565,7 @@ public class LocalePicker extends LinearLayout {
                 selectorIndex = getWrappedSelectorIndex(selectorIndex);
             }
             selectorIndices[i] = selectorIndex;
-            ensureCachedScrollSelectorValue(selectorIndices[i]);
+            cacheScrollSelectorValue(i, selectorIndex);
         }
     }
 
@@ -1571,7 +1715,10 @@ public class LocalePicker extends LinearLayout {
             nextScrollSelectorIndex = mMinValue;
         }
         selectorIndices[selectorIndices.length - 1] = nextScrollSelectorIndex;
-        ensureCachedScrollSelectorValue(nextScrollSelectorIndex);
+        // The slot of the index that scrolled out becomes the slot of the last index
+        final int slot = mSelectorLayoutsStart;
+        mSelectorLayoutsStart = slot + 1 == mSelectorLayouts.length ? 0 : slot + 1;
+        cacheScrollSelectorValue(slot, nextScrollSelectorIndex);
     }
 
     /**
@@ -1587,30 +1734,109 @@ public class LocalePicker extends LinearLayout {
             nextScrollSelectorIndex = mMaxValue;
         }
         selectorIndices[0] = nextScrollSelectorIndex;
-        ensureCachedScrollSelectorValue(nextScrollSelectorIndex);
+        // The slot of the index that scrolled out becomes the slot of the first index
+        final int slot = mSelectorLayoutsStart == 0
+                ? mSelectorLayouts.length - 1 : mSelectorLayoutsStart - 1;
+        mSelectorLayoutsStart = slot;
+        cacheScrollSelectorValue(slot, nextScrollSelectorIndex);
+    }
+
+    /**
+     * Points the given <code>slot</code> of {@link #mSelectorLayouts} at the text layout of the
+     * given <code>selectorIndex</code>.
+     */
+    private void cacheScrollSelectorValue(int slot, int selectorIndex) {
+        mSelectorLayouts[slot] = getValueLayout(selectorIndex);
+    }
+
+    /**
+     * @return The text layout of <code>value</code> from {@link #mValueLayouts}, building it if
+     * it isn't there yet, or null if the value has no text.
+     */
+    private StaticLayout getValueLayout(int value) {
+        if (value < mMinValue || value > mMaxValue) {
+            return null;
+        }
+        if (mValueLayouts == null) {
+            mValueLayouts = new StaticLayout[mMaxValue - mMinValue + 1];
+        }
+        final int index = value - mMinValue;
+        StaticLayout layout = mValueLayouts[index];
+        if (layout == null) {
+            final String text = (mDisplayedValues != null)
+                    ? mDisplayedValues[index] : formatNumber(value);
+            layout = createSelectorLayout(text, mSelectorWheelPaint, mSelectorTextParams);
+            mValueLayouts[index] = layout;
+        }
+        return layout;
+    }
+
+    /**
+     * Drops the text layouts of all values, the next call to
+     * {@link #initializeSelectorWheelIndices()} builds those of the window again.
+     */
+    private void clearValueLayouts() {
+        mValueLayouts = null;
+        mValueLayoutsGeneration++;
     }
 
     /**
-     * Ensures we have a cached string representation of the given <code> selectorIndex</code> to
-     * avoid multiple instantiations of the same string.
+     * Builds the text layouts of all displayed values on the app executor, so that scrolling
+     * through them doesn't shape text on the main thread. Layouts built on the main thread in
+     * the meantime are kept.
      */
-    private void ensureCachedScrollSelectorValue(int selectorIndex) {
-        SparseArray<String> cache = mSelectorIndexToStringCache;
-        String scrollSelectorValue = cache.get(selectorIndex);
-        if (scrollSelectorValue != null) {
+    private void buildValueLayoutsInBackground() {
+        final String[] displayedValues = mDisplayedValues;
+        if (displayedValues == null || displayedValues.length != mMaxValue - mMinValue + 1) {
             return;
         }
-        if (selectorIndex < mMinValue || selectorIndex > mMaxValue) {
-            scrollSelectorValue = "";
-        } else {
-            if (mDisplayedValues != null) {
-                int displayedValueIndex = selectorIndex - mMinValue;
-                scrollSelectorValue = mDisplayedValues[displayedValueIndex];
-            } else {
-                scrollSelectorValue = formatNumber(selectorIndex);
+        final int generation = mValueLayoutsGeneration;
+        // The paint is never changed after construction, so layouts drawn with the copy look
+        // the same.
+        final TextPaint paint = newSelectorPaint();
+        SetupWizardApp.getExecutor().execute(() -> {
+            final PrecomputedText.Params params = new PrecomputedText.Params.Builder(paint)
+                    .build();
+            final StaticLayout[] layouts = new StaticLayout[displayedValues.length];
+            for (int i = 0; i < displayedValues.length; i++) {
+                layouts[i] = createSelectorLayout(displayedValues[i], paint, params);
             }
+            post(() -> {
+                if (generation != mValueLayoutsGeneration) {
+                    return;
+                }
+                if (mValueLayouts == null) {
+                    mValueLayouts = layouts;
+                    return;
+                }
+                for (int i = 0; i < layouts.length; i++) {
+                    if (mValueLayouts[i] == null) {
+                        mValueLayouts[i] = layouts[i];
+                    }
+                }
+            });
+        });
+    }
+
+    /**
+     * @return A single line layout exactly as wide as <code>value</code>, or null if it is empty.
+     * Doesn't touch the view, so it may be called on any thread with its own paint.
+     */
+    private static StaticLayout createSelectorLayout(String value, TextPaint paint,
+            PrecomputedText.Params params) {
+        if (TextUtils.isEmpty(value)) {
+            return null;
         }
-        cache.put(selectorIndex, scrollSelectorValue);
+        final PrecomputedText text = PrecomputedText.create(value, params);
+        final int width = (int) Math.ceil(Layout.getDesiredWidth(text, paint));
+        // Must match the params, otherwise the layout measures the text again.
+        return StaticLayout.Builder.obtain(text, 0, text.length(), paint, width)
+                .setTextDirection(params.getTextDirection())
+                .setBreakStrategy(params.getBreakStrategy())
+                .setHyphenationFrequency(params.getHyphenationFrequency())
+                .setIncludePad(false)
+                .setMaxLines(1)
+                .build();
     }
 
     private String formatNumber(int value) {
@@ -1721,18 +1947,23 @@ public class LocalePicker extends LinearLayout {
         mPressedStateHelper.cancel();
     }
 
+    private PrefixIndex getDisplayedValuesIndex() {
+        if (mDisplayedValuesIndex == null) {
+            mDisplayedValuesIndex = new PrefixIndex(mDisplayedValues);
+        }
+        return mDisplayedValuesIndex;
+    }
+
     /**
      * @return The selected index given its displayed <code>value</code>.
      */
     private int getSelectedPos(String value) {
         // Ignore as if it's not a number we don't care
         if (mDisplayedValues != null) {
-            for (int i = 0; i < mDisplayedValues.length; i++) {
-                // Don't force the user to type in jan when ja will do
-                value = value.toLowerCase();
-                if (mDisplayedValues[i].toLowerCase().startsWith(value)) {
-                    return mMinValue + i;
-                }
+            // Don't force the user to type in jan when ja will do
+            final int i = getDisplayedValuesIndex().find(value);
+            if (i >= 0) {
+                return mMinValue + i;
             }
 
             /*
@@ -1830,13 +2061,17 @@ public class LocalePicker extends LinearLayout {
                 }
                 String result = String.valueOf(dest.subSequence(0, dstart)) + filtered
                         + dest.subSequence(dend, dest.length());
-                String str = result.toLowerCase();
-                for (String val : mDisplayedValues) {
-                    String valLowerCase = val.toLowerCase();
-                    if (valLowerCase.startsWith(str)) {
-                        postSetSelectionCommand(result.length(), val.length());
-                        return val.subSequence(dstart, val.length());
-                    }
+                final int i = getDisplayedValuesIndex().find(result);
+                if (i >= 0) {
+                    // Keep what was typed and complete it with the rest of the value, which
+                    // may not start at the same offset once normalized.
+                    String val = mDisplayedValues[i];
+                    CharSequence completion = val.subSequence(
+                            PrefixIndex.getMatchEnd(val, result), val.length());
+                    int selectionStart = dstart + filtered.length();
+                    postSetSelectionCommand(selectionStart,
+                            selectionStart + completion.length());
+                    return filtered + completion.toString();
                 }
                 return "";
             }
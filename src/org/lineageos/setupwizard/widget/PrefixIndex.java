@@ -0,0 +1,201 @@
+/*
+ * SPDX-FileCopyrightText: 2026 The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.lineageos.setupwizard.widget;
+
+import android.icu.lang.UCharacter;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+
+/**
+ * Sorted index over the normalized forms of a list of values, for looking up values by a typed
+ * prefix. Values are compared case-folded and without diacritics, so typing "espa" finds
+ * "Español".
+ *
+ * A lookup is a binary search for the range of values starting with the prefix, plus a constant
+ * time query of the first value of that range in the original order. Prefixes of ASCII
+ * characters, which is what hardware keyboards type, are looked up without allocating.
+ *
+ * Normalizing may change the length of a value, "ß" folds to "ss" and diacritics typed as
+ * combining marks are dropped, so offsets into a value are mapped with {@link #getMatchEnd}.
+ */
+final class PrefixIndex {
+
+    // Sorted normalized values, and their positions in the original list.
+    private final String[] mKeys;
+    private final int[] mPositions;
+
+    // mMinPositions[k][i] is the smallest position in mPositions[i, i + 2^k).
+    private final int[][] mMinPositions;
+
+    private final StringBuilder mQuery = new StringBuilder();
+
+    PrefixIndex(String[] values) {
+        final int count = values.length;
+        final String[] keys = new String[count];
+        final Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = normalize(values[i]);
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            final int result = keys[a].compareTo(keys[b]);
+            return result != 0 ? result : Integer.compare(a, b);
+        });
+        mKeys = new String[count];
+        mPositions = new int[count];
+        for (int i = 0; i < count; i++) {
+            mKeys[i] = keys[order[i]];
+            mPositions[i] = order[i];
+        }
+
+        int levels = 1;
+        while ((1 << levels) <= count) {
+            levels++;
+        }
+        mMinPositions = new int[levels][];
+        mMinPositions[0] = mPositions;
+        for (int k = 1; k < levels; k++) {
+            final int[] previous = mMinPositions[k - 1];
+            final int half = 1 << (k - 1);
+            final int[] current = new int[count - (1 << k) + 1];
+            for (int i = 0; i < current.length; i++) {
+                current[i] = Math.min(previous[i], previous[i + half]);
+            }
+            mMinPositions[k] = current;
+        }
+    }
+
+    /**
+     * @return The position in the original list of the first value starting with
+     * <code>prefix</code>, or -1 if there is none. Must be called on the main thread.
+     */
+    int find(CharSequence prefix) {
+        final CharSequence query = normalizeQuery(prefix);
+        final int start = lowerBound(query);
+        if (start == mKeys.length || !startsWith(mKeys[start], query)) {
+            return -1;
+        }
+        // The values starting with the query follow each other, find where they end
+        int low = start + 1;
+        int high = mKeys.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (startsWith(mKeys[mid], query)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return minPosition(start, low);
+    }
+
+    /**
+     * @return The smallest position in <code>mPositions[start, end)</code>.
+     */
+    private int minPosition(int start, int end) {
+        final int level = 31 - Integer.numberOfLeadingZeros(end - start);
+        final int[] minPositions = mMinPositions[level];
+        return Math.min(minPositions[start], minPositions[end - (1 << level)]);
+    }
+
+    /**
+     * @return The index of the first key not less than <code>query</code>.
+     */
+    private int lowerBound(CharSequence query) {
+        int low = 0;
+        int high = mKeys.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (compare(mKeys[mid], query) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return The end of the part of <code>value</code> that <code>prefix</code> matches once
+     * both are normalized, including the diacritics following it. A character that is only
+     * partially matched, like "ß" by "s", counts as matched.
+     */
+    static int getMatchEnd(String value, CharSequence prefix) {
+        final int prefixLength = normalize(prefix.toString()).length();
+        int normalizedLength = 0;
+        int end = 0;
+        while (end < value.length() && normalizedLength < prefixLength) {
+            final int codePoint = value.codePointAt(end);
+            normalizedLength += normalize(codePoint).length();
+            end += Character.charCount(codePoint);
+        }
+        while (end < value.length()) {
+            final int codePoint = value.codePointAt(end);
+            if (!normalize(codePoint).isEmpty()) {
+                break;
+            }
+            end += Character.charCount(codePoint);
+        }
+        return end;
+    }
+
+    private static String normalize(int codePoint) {
+        return normalize(new String(Character.toChars(codePoint)));
+    }
+
+    private CharSequence normalizeQuery(CharSequence prefix) {
+        final StringBuilder query = mQuery;
+        query.setLength(0);
+        for (int i = 0; i < prefix.length(); i++) {
+            final char c = prefix.charAt(i);
+            if (c >= 0x80) {
+                // Not worth doing by hand
+                return normalize(prefix.toString());
+            }
+            query.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+        return query;
+    }
+
+    /**
+     * @return <code>value</code> without diacritics and case-folded, as the index compares it.
+     */
+    static String normalize(String value) {
+        final String decomposed = Normalizer.normalize(value, Normalizer.Form.NFD);
+        final StringBuilder stripped = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            final char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                stripped.append(c);
+            }
+        }
+        return UCharacter.foldCase(stripped.toString(), true);
+    }
+
+    private static int compare(String key, CharSequence query) {
+        final int length = Math.min(key.length(), query.length());
+        for (int i = 0; i < length; i++) {
+            final int result = key.charAt(i) - query.charAt(i);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return key.length() - query.length();
+    }
+
+    private static boolean startsWith(String key, CharSequence query) {
+        if (key.length() < query.length()) {
+            return false;
+        }
+        for (int i = 0; i < query.length(); i++) {
+            if (key.charAt(i) != query.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
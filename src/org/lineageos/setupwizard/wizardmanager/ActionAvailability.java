@@ -0,0 +1,332 @@
+/*
+ * SPDX-FileCopyrightText: 2026 The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.lineageos.setupwizard.wizardmanager;
+
+import static android.content.pm.PackageManager.COMPONENT_ENABLED_STATE_DISABLED;
+import static android.content.pm.PackageManager.COMPONENT_ENABLED_STATE_ENABLED;
+
+import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
+
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ActivityInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.util.Log;
+
+import org.lineageos.setupwizard.SetupWizardApp;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Process-wide cache of whether the activity behind a {@link WizardAction} can be resolved.
+ *
+ * All actions of a script are resolved in one pass when the script is loaded, so that walking
+ * the script afterwards does not need any PackageManager calls. The components that could
+ * handle each action, enabled or not, are then looked up in the background, so that enabling
+ * or disabling one of them only updates the actions it handles, without asking PackageManager
+ * again. Any other package change drops the cached results of the affected actions.
+ */
+public final class ActionAvailability {
+
+    private static final String TAG = ActionAvailability.class.getSimpleName();
+
+    private static final Object sLock = new Object();
+    // All keyed by action URI, since several actions may share the same intent.
+    // The enabled components handling the action.
+    private static final HashMap<String, Set<ComponentName>> sHandlers = new HashMap<>();
+    // All components that could handle the action, including disabled ones.
+    private static final HashMap<String, Set<ComponentName>> sCandidates = new HashMap<>();
+    private static final HashMap<String, Intent> sIntents = new HashMap<>();
+    // Component state changes queued while the candidates of the action were not known yet,
+    // applied in order once they are.
+    private static final HashMap<String, LinkedHashMap<ComponentName, Integer>> sPendingStates =
+            new HashMap<>();
+    private static int sGeneration;
+    // Only changes when the candidates are dropped.
+    private static int sCandidatesGeneration;
+    private static boolean sReceiverRegistered;
+
+    private static final BroadcastReceiver sPackageChangedReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (LOGV) {
+                Log.v(TAG, "onReceive " + intent);
+            }
+            final String packageName = intent.getData() != null
+                    ? intent.getData().getSchemeSpecificPart() : null;
+            if (Intent.ACTION_PACKAGE_CHANGED.equals(intent.getAction())
+                    && packageName != null) {
+                if (!packageName.equals(context.getPackageName())) {
+                    invalidatePackage(packageName);
+                }
+                // Changes to our own components went through onComponentStateQueued() already.
+                return;
+            }
+            invalidate();
+        }
+    };
+
+    private ActionAvailability() {
+    }
+
+    /**
+     * Resolves every action of the script that is not cached yet, and starts looking up the
+     * candidate components of the actions in the background.
+     */
+    static void resolve(Context context, WizardScript wizardScript) {
+        registerReceiverIfNeeded(context);
+        for (WizardAction action : wizardScript.getActions()) {
+            isAvailable(context, action);
+        }
+        final Context appContext = context.getApplicationContext();
+        SetupWizardApp.getExecutor().execute(() -> {
+            for (WizardAction action : wizardScript.getActions()) {
+                getCandidates(appContext, action.getUri(), action.getIntent());
+            }
+        });
+    }
+
+    static boolean isAvailable(Context context, WizardAction action) {
+        final int generation;
+        synchronized (sLock) {
+            Set<ComponentName> handlers = sHandlers.get(action.getUri());
+            if (handlers != null) {
+                return !handlers.isEmpty();
+            }
+            generation = sGeneration;
+        }
+        final Set<ComponentName> handlers = queryHandlers(context, action.getIntent(), 0);
+        synchronized (sLock) {
+            // Don't cache a result that may predate an invalidation.
+            if (generation == sGeneration) {
+                sHandlers.put(action.getUri(), handlers);
+                sIntents.put(action.getUri(), action.getIntent());
+            }
+        }
+        if (LOGV) {
+            Log.v(TAG, "isAvailable " + action.getId() + " = " + !handlers.isEmpty());
+        }
+        return !handlers.isEmpty();
+    }
+
+    /**
+     * @return A counter that changes whenever the cached availability changes.
+     */
+    static int getGeneration() {
+        synchronized (sLock) {
+            return sGeneration;
+        }
+    }
+
+    /**
+     * Updates the actions handled by a component whose enabled state is about to change, so
+     * that transitions see the new state right away, before it is applied. States other than
+     * enabled and disabled depend on the manifest, so the actions the component handles are
+     * dropped instead, and must be invalidated again once the change is applied. Actions whose
+     * candidates are still being looked up get updated once that is done, instead of querying
+     * PackageManager on the calling thread.
+     */
+    public static void onComponentStateQueued(Context context, ComponentName componentName,
+            int enabledState) {
+        final HashMap<String, Intent> unknown = new HashMap<>();
+        synchronized (sLock) {
+            boolean changed = false;
+            for (String uri : new ArrayList<>(sHandlers.keySet())) {
+                final Set<ComponentName> candidates = sCandidates.get(uri);
+                if (candidates != null) {
+                    if (candidates.contains(componentName)) {
+                        changed |= applyState(uri, componentName, enabledState);
+                    }
+                    continue;
+                }
+                final Intent intent = sIntents.get(uri);
+                if (intent != null) {
+                    sPendingStates.computeIfAbsent(uri, k -> new LinkedHashMap<>())
+                            .put(componentName, enabledState);
+                    unknown.put(uri, intent);
+                }
+            }
+            if (changed) {
+                sGeneration++;
+            }
+        }
+        if (unknown.isEmpty()) {
+            return;
+        }
+        if (LOGV) {
+            Log.v(TAG, "onComponentStateQueued " + componentName + " pending for "
+                    + unknown.keySet());
+        }
+        // Normally looked up already by resolve(), in which case this only finds them cached.
+        final Context appContext = context.getApplicationContext();
+        SetupWizardApp.getExecutor().execute(() -> {
+            for (Map.Entry<String, Intent> entry : unknown.entrySet()) {
+                getCandidates(appContext, entry.getKey(), entry.getValue());
+            }
+        });
+    }
+
+    /**
+     * @return Whether the cached handlers of the action changed.
+     */
+    private static boolean applyState(String uri, ComponentName componentName,
+            int enabledState) {
+        final Set<ComponentName> handlers = sHandlers.get(uri);
+        if (handlers == null) {
+            return false;
+        }
+        if (enabledState == COMPONENT_ENABLED_STATE_ENABLED) {
+            return handlers.add(componentName);
+        } else if (enabledState == COMPONENT_ENABLED_STATE_DISABLED) {
+            return handlers.remove(componentName);
+        }
+        sHandlers.remove(uri);
+        return true;
+    }
+
+    /**
+     * Drops the cached results of the actions the given components handle.
+     */
+    public static void invalidate(Collection<ComponentName> componentNames) {
+        synchronized (sLock) {
+            boolean changed = false;
+            for (Map.Entry<String, Set<ComponentName>> entry : sCandidates.entrySet()) {
+                for (ComponentName componentName : componentNames) {
+                    if (entry.getValue().contains(componentName)) {
+                        changed |= sHandlers.remove(entry.getKey()) != null;
+                        break;
+                    }
+                }
+            }
+            if (changed) {
+                sGeneration++;
+            }
+        }
+    }
+
+    /**
+     * Drops all cached results.
+     */
+    public static void invalidate() {
+        synchronized (sLock) {
+            sHandlers.clear();
+            sCandidates.clear();
+            sIntents.clear();
+            sPendingStates.clear();
+            sGeneration++;
+            sCandidatesGeneration++;
+        }
+    }
+
+    /**
+     * Drops the cached results of the actions a package may handle, keeping the candidate
+     * components, since enabling or disabling components does not change those.
+     */
+    private static void invalidatePackage(String packageName) {
+        synchronized (sLock) {
+            boolean changed = false;
+            Iterator<String> uris = sHandlers.keySet().iterator();
+            while (uris.hasNext()) {
+                final Set<ComponentName> candidates = sCandidates.get(uris.next());
+                if (candidates == null || containsPackage(candidates, packageName)) {
+                    uris.remove();
+                    changed = true;
+                }
+            }
+            if (changed) {
+                sGeneration++;
+            }
+        }
+    }
+
+    private static boolean containsPackage(Set<ComponentName> componentNames,
+            String packageName) {
+        for (ComponentName componentName : componentNames) {
+            if (componentName.getPackageName().equals(packageName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Set<ComponentName> getCandidates(Context context, String uri, Intent intent) {
+        final int generation;
+        synchronized (sLock) {
+            Set<ComponentName> candidates = sCandidates.get(uri);
+            if (candidates != null) {
+                return candidates;
+            }
+            generation = sCandidatesGeneration;
+        }
+        final Set<ComponentName> candidates = queryHandlers(context, intent,
+                PackageManager.MATCH_DISABLED_COMPONENTS);
+        synchronized (sLock) {
+            if (generation == sCandidatesGeneration) {
+                sCandidates.put(uri, candidates);
+                applyPendingStates(uri, candidates);
+            }
+        }
+        return candidates;
+    }
+
+    private static void applyPendingStates(String uri, Set<ComponentName> candidates) {
+        final LinkedHashMap<ComponentName, Integer> pending = sPendingStates.remove(uri);
+        if (pending == null) {
+            return;
+        }
+        boolean changed = false;
+        for (Map.Entry<ComponentName, Integer> entry : pending.entrySet()) {
+            if (candidates.contains(entry.getKey())) {
+                changed |= applyState(uri, entry.getKey(), entry.getValue());
+            }
+        }
+        if (changed) {
+            sGeneration++;
+        }
+    }
+
+    private static void registerReceiverIfNeeded(Context context) {
+        synchronized (sLock) {
+            if (sReceiverRegistered) {
+                return;
+            }
+            sReceiverRegistered = true;
+        }
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addDataScheme("package");
+        context.getApplicationContext().registerReceiver(sPackageChangedReceiver, filter);
+    }
+
+    private static Set<ComponentName> queryHandlers(Context context, Intent intent, int flags) {
+        final HashSet<ComponentName> handlers = new HashSet<>();
+        if (intent == null) {
+            return handlers;
+        }
+        final List<ResolveInfo> infos = context.getPackageManager().queryIntentActivities(intent,
+                PackageManager.MATCH_DEFAULT_ONLY | flags);
+        for (ResolveInfo info : infos) {
+            final ActivityInfo activityInfo = info.activityInfo;
+            handlers.add(new ComponentName(activityInfo.packageName, activityInfo.name));
+        }
+        return handlers;
+    }
+}
@@ -33,6 +33,10 @@ public class WizardAction implements Parcelable {
     private final String mUri;
     private final WizardTransitions mTransitions;
 
+    // Parsed lazily from mUri, never handed out directly.
+    private Intent mIntentTemplate;
+    private volatile boolean mIntentParsed;
+
     public WizardAction(String id, String uri, WizardTransitions transitions) {
         if (transitions == null) {
             throw new IllegalArgumentException("WizardTransitions cannot be null");
@@ -50,15 +54,30 @@ public class WizardAction implements Parcelable {
         return mUri;
     }
 
+    /**
+     * @return A new copy of the Intent described by this action's URI, or null if the URI is
+     * malformed. The URI is parsed at most once.
+     */
     public Intent getIntent() {
-        Intent intent = null;
-        try {
-            intent = Intent.parseUri(mUri, URI_INTENT_SCHEME);
-            intent.addFlags(FLAG_GRANT_READ_URI_PERMISSION);
-        } catch (URISyntaxException e) {
-            Log.e(TAG, "Bad URI: " + mUri);
+        if (!mIntentParsed) {
+            synchronized (this) {
+                if (!mIntentParsed) {
+                    try {
+                        Intent intent = Intent.parseUri(mUri, URI_INTENT_SCHEME);
+                        intent.addFlags(FLAG_GRANT_READ_URI_PERMISSION);
+                        mIntentTemplate = intent;
+                    } catch (URISyntaxException e) {
+                        Log.e(TAG, "Bad URI: " + mUri);
+                    }
+                    mIntentParsed = true;
+                }
+            }
         }
-        return intent;
+        return mIntentTemplate != null ? new Intent(mIntentTemplate) : null;
+    }
+
+    WizardTransitions getTransitions() {
+        return mTransitions;
     }
 
     public String getNextAction(int resultCode) {
@@ -98,17 +117,16 @@ public class WizardAction implements Parcelable {
     }
 
     public void writeToParcel(Parcel dest, int flags) {
-        dest.writeString(mUri);
         dest.writeString(mId);
-        dest.writeParcelable(mTransitions, flags);
+        dest.writeString(mUri);
+        mTransitions.writeToParcel(dest, flags);
     }
 
     public static final Creator<WizardAction> CREATOR = new Creator<>() {
         public WizardAction createFromParcel(Parcel source) {
             return new WizardAction(source.readString(),
                     source.readString(),
-                    source.readParcelable(WizardTransitions.class.getClassLoader(),
-                            WizardTransitions.class));
+                    WizardTransitions.CREATOR.createFromParcel(source));
         }
 
         public WizardAction[] newArray(int size) {
@@ -116,7 +134,8 @@ public class WizardAction implements Parcelable {
         }
     };
 
-    private static void parseResult(WizardTransitions transitions, XmlPullParser parser) {
+    private static void parseResult(WizardTransitions transitions, XmlPullParser parser)
+            throws XmlPullParserException {
         String resultCode = parser.getAttributeValue(WizardScript.WIZARD_SCRIPT_NAMESPACE,
                 WizardScript.ATTR_RESULT_CODE);
         String action = parser.getAttributeValue(WizardScript.WIZARD_SCRIPT_NAMESPACE,
@@ -130,7 +149,12 @@ public class WizardAction implements Parcelable {
         if (resultCode == null) {
             transitions.setDefaultAction(action);
         } else {
-            transitions.put(Integer.parseInt(resultCode), action);
+            try {
+                transitions.put(Integer.parseInt(resultCode), action);
+            } catch (NumberFormatException e) {
+                throw new XmlPullParserException("Invalid resultCode '" + resultCode + "'",
+                        parser, e);
+            }
         }
     }
 
@@ -142,11 +166,12 @@ public class WizardAction implements Parcelable {
                 WizardScript.ATTR_URI);
         WizardTransitions transitions = new WizardTransitions();
         if (id == null) {
-            throw new XmlPullParserException("WizardAction must define an id");
+            throw new XmlPullParserException("WizardAction must define an id", parser, null);
         }
 
         if (uri == null) {
-            throw new XmlPullParserException("WizardAction must define an intent URI");
+            throw new XmlPullParserException("WizardAction must define an intent URI", parser,
+                    null);
         }
         if (LOGV) {
             Log.v(TAG, "parseWizardAction{" +
@@ -156,15 +181,16 @@ public class WizardAction implements Parcelable {
         }
         int type;
         final int depth = parser.getDepth();
-        while (((type = parser.next()) != XmlPullParser.END_TAG ||
-                parser.getDepth() > depth) && type != XmlPullParser.END_DOCUMENT) {
-            if (!(type == XmlPullParser.END_TAG || type == XmlPullParser.TEXT)) {
-                if (parser.getName().equals(WizardScript.TAG_RESULT)) {
-                    parseResult(transitions, parser);
-                } else {
-                    XmlUtils.skipCurrentTag(parser);
-                }
+        while ((type = parser.next()) != XmlPullParser.END_DOCUMENT
+                && (type != XmlPullParser.END_TAG || parser.getDepth() > depth)) {
+            if (type != XmlPullParser.START_TAG) {
+                continue;
+            }
+            if (WizardScript.TAG_RESULT.equals(parser.getName())) {
+                parseResult(transitions, parser);
             }
+            // Consumes the element up to its end tag, so only direct children are seen here.
+            XmlUtils.skipCurrentTag(parser);
         }
 
         return new WizardAction(id, uri, transitions);
@@ -19,12 +19,9 @@ import android.annotation.Nullable;
 import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
-import android.content.pm.PackageManager;
 import android.os.Bundle;
 import android.util.Log;
 
-import com.google.android.setupcompat.util.ResultCodes;
-
 import org.lineageos.setupwizard.util.SetupWizardUtils;
 
 import java.util.HashMap;
@@ -34,6 +31,8 @@ public class WizardManager extends Activity {
     private static final String TAG = WizardManager.class.getSimpleName();
 
     private static final HashMap<String, WizardScript> sWizardScripts = new HashMap<>();
+    private static final HashMap<String, WizardTransitionTable> sTransitionTables =
+            new HashMap<>();
 
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
@@ -73,6 +72,12 @@ public class WizardManager extends Activity {
     }
 
     private void doAction(String scriptUri, WizardAction action, Intent extras) {
+        Intent intent = getActionIntent(scriptUri, action, extras);
+        intent.addFlags(Intent.FLAG_ACTIVITY_FORWARD_RESULT);
+        startActivity(intent);
+    }
+
+    private static Intent getActionIntent(String scriptUri, WizardAction action, Intent extras) {
         Intent intent = action.getIntent();
         intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
         if (LOGV) {
@@ -88,32 +93,14 @@ public class WizardManager extends Activity {
         wizardBundle.putString(EXTRA_SCRIPT_URI, scriptUri);
         wizardBundle.putString(EXTRA_ACTION_ID, action.getId());
         intent.putExtra(EXTRA_WIZARD_BUNDLE, wizardBundle);
-        intent.addFlags(Intent.FLAG_ACTIVITY_FORWARD_RESULT);
-        startActivity(intent);
+        return intent;
     }
 
     private void load(String scriptUri, Intent extras) {
-        WizardScript wizardScript = getWizardScript(this, scriptUri);
-        WizardAction wizardAction;
-        for (wizardAction = wizardScript.getFirstAction();
-                wizardAction != null;
-                wizardAction = wizardScript.getNextAction(wizardAction.getId(),
-                        ResultCodes.RESULT_ACTIVITY_NOT_FOUND)) {
-            if (isActionAvailable(this, wizardAction)) {
-                break;
-            }
-
-            if (LOGV) {
-                Log.v(TAG, "load action not available " + wizardAction);
-            }
-        }
-
-        if (wizardAction != null) {
-            doAction(scriptUri, wizardAction, extras);
-        } else {
-            Log.e(TAG, "load could not resolve first action scriptUri=" +
-                    scriptUri + " actionId=" + wizardScript.getFirstActionId());
-            exit(scriptUri);
+        Intent intent = resolveLoadIntent(this, scriptUri, extras);
+        if (intent != null) {
+            intent.addFlags(Intent.FLAG_ACTIVITY_FORWARD_RESULT);
+            startActivity(intent);
         }
     }
 
@@ -126,16 +113,82 @@ public class WizardManager extends Activity {
         if (wizardAction != null) {
             doAction(scriptUri, wizardAction, extras);
         } else {
-            exit(scriptUri);
+            exit(this, scriptUri);
         }
     }
 
-    private void exit(String scriptUri) {
+    /**
+     * Resolves the first action of a script in the calling process, instead of starting this
+     * activity with {@link org.lineageos.setupwizard.SetupWizardApp#ACTION_LOAD} to do so.
+     *
+     * Must be called on the main thread.
+     *
+     * @return The intent of the first action, or null if the script could not be loaded.
+     */
+    public static Intent resolveLoadIntent(Context context, String scriptUri, Intent extras) {
+        WizardTransitionTable transitionTable = getTransitionTable(context, scriptUri);
+        WizardAction wizardAction =
+                transitionTable != null ? transitionTable.getFirstAction() : null;
+        if (wizardAction == null) {
+            Log.e(TAG, "load could not resolve first action scriptUri=" + scriptUri);
+            exit(context, scriptUri);
+            return null;
+        }
+        return getActionIntent(scriptUri, wizardAction, extras);
+    }
+
+    /**
+     * Resolves an {@link com.google.android.setupcompat.util.WizardManagerHelper#ACTION_NEXT}
+     * intent in the calling process, instead of starting this activity to do so. The returned
+     * intent is meant to be started for result by the activity that finished, which then
+     * receives the results the trampoline would have forwarded to it.
+     *
+     * Must be called on the main thread, and only if {@link #canResolveNext} is true.
+     *
+     * @return The intent of the next action, or null if the wizard has ended.
+     */
+    public static Intent resolveNextIntent(Context context, Intent nextIntent) {
+        Bundle wizardBundle = nextIntent.getBundleExtra(EXTRA_WIZARD_BUNDLE);
+        String scriptUri = wizardBundle.getString(EXTRA_SCRIPT_URI);
+        String actionId = wizardBundle.getString(EXTRA_ACTION_ID);
+        int resultCode = nextIntent.getIntExtra(EXTRA_RESULT_CODE, 0);
+        if (LOGV) {
+            Log.v(TAG, "resolveNextIntent actionId=" + actionId + " resultCode=" + resultCode);
+        }
+        WizardAction wizardAction = checkNextAction(context, scriptUri, actionId, resultCode);
+        if (wizardAction == null) {
+            exit(context, scriptUri);
+            return null;
+        }
+        return getActionIntent(scriptUri, wizardAction, nextIntent);
+    }
+
+    /**
+     * @return Whether {@link #resolveNextIntent} can handle the given
+     * {@link com.google.android.setupcompat.util.WizardManagerHelper#ACTION_NEXT} intent,
+     * which is the case for actions this activity started from a script.
+     */
+    public static boolean canResolveNext(Intent nextIntent) {
+        Bundle wizardBundle = nextIntent.getBundleExtra(EXTRA_WIZARD_BUNDLE);
+        return wizardBundle != null && wizardBundle.getString(EXTRA_SCRIPT_URI) != null
+                && wizardBundle.getString(EXTRA_ACTION_ID) != null;
+    }
+
+    /**
+     * Drops the cached scripts, which are not needed anymore once setup is complete. Does disk
+     * I/O, must be called on a background thread.
+     */
+    public static void clearScriptCache(Context context) {
+        WizardScriptCache.clear(context);
+    }
+
+    private static void exit(Context context, String scriptUri) {
         if (LOGV) {
             Log.v(TAG, "exit scriptUri=" + scriptUri);
         }
         WizardManager.sWizardScripts.remove(scriptUri);
-        SetupWizardUtils.disableComponent(this, WizardManager.class);
+        WizardManager.sTransitionTables.remove(scriptUri);
+        SetupWizardUtils.disableComponent(context, WizardManager.class);
     }
 
     private static WizardAction checkNextAction(Context context, String scriptUri, String actionId,
@@ -145,20 +198,9 @@ public class WizardManager extends Activity {
                     + actionId + " resultCode=" + resultCode);
         }
 
-        WizardScript wizardScript = getWizardScript(context, scriptUri);
-        WizardAction wizardAction;
-        for (wizardAction = wizardScript.getNextAction(actionId, resultCode);
-                wizardAction != null;
-                wizardAction = wizardScript.getNextAction(wizardAction.getId(),
-                        ResultCodes.RESULT_ACTIVITY_NOT_FOUND)) {
-            if (WizardManager.isActionAvailable(context, wizardAction)) {
-                break;
-            }
-
-            if (LOGV) {
-                Log.v(TAG, "checkNextAction action not available " + wizardAction);
-            }
-        }
+        WizardTransitionTable transitionTable = getTransitionTable(context, scriptUri);
+        WizardAction wizardAction = transitionTable != null
+                ? transitionTable.getNextAction(actionId, resultCode) : null;
 
         if (LOGV) {
             Log.v(TAG, "checkNextAction action=" + wizardAction);
@@ -167,22 +209,57 @@ public class WizardManager extends Activity {
         return wizardAction;
     }
 
-    private static boolean isActionAvailable(Context context, WizardAction action) {
-        return isIntentAvailable(context, action.getIntent());
-    }
-
-    private static boolean isIntentAvailable(Context context, Intent intent) {
-        return !context.getPackageManager().queryIntentActivities(intent,
-                PackageManager.MATCH_DEFAULT_ONLY).isEmpty();
+    /**
+     * Predicts the action the wizard moves on to when the action that was started with
+     * {@code currentIntent} finishes with {@link Activity#RESULT_OK}. That is the default
+     * transition of the action, unless the script maps RESULT_OK explicitly.
+     *
+     * Must be called on the main thread. Only consults an already loaded transition table, so
+     * this never blocks on I/O or PackageManager calls.
+     *
+     * @return The intent of the predicted action, or null if it cannot be predicted.
+     */
+    public static Intent getPredictedNextIntent(Intent currentIntent) {
+        Bundle wizardBundle = currentIntent.getBundleExtra(EXTRA_WIZARD_BUNDLE);
+        if (wizardBundle == null) {
+            return null;
+        }
+        WizardTransitionTable transitionTable =
+                sTransitionTables.get(wizardBundle.getString(EXTRA_SCRIPT_URI));
+        if (transitionTable == null || transitionTable.isStale()) {
+            return null;
+        }
+        WizardAction wizardAction = transitionTable.getNextAction(
+                wizardBundle.getString(EXTRA_ACTION_ID), Activity.RESULT_OK);
+        if (LOGV) {
+            Log.v(TAG, "getPredictedNextIntent action=" + wizardAction);
+        }
+        return wizardAction != null ? wizardAction.getIntent() : null;
     }
 
     private static WizardScript getWizardScript(Context context, String scriptUri) {
         WizardScript wizardScript = sWizardScripts.get(scriptUri);
         if (wizardScript == null) {
             wizardScript = WizardScript.loadFromUri(context, scriptUri);
-            sWizardScripts.put(scriptUri, wizardScript);
+            if (wizardScript != null) {
+                sWizardScripts.put(scriptUri, wizardScript);
+            }
         }
         return wizardScript;
     }
 
+    private static WizardTransitionTable getTransitionTable(Context context, String scriptUri) {
+        WizardTransitionTable transitionTable = sTransitionTables.get(scriptUri);
+        if (transitionTable == null || transitionTable.isStale()) {
+            WizardScript wizardScript = getWizardScript(context, scriptUri);
+            if (wizardScript == null) {
+                // Already logged by WizardScript
+                return null;
+            }
+            transitionTable = WizardTransitionTable.build(context, wizardScript);
+            sTransitionTables.put(scriptUri, transitionTable);
+        }
+        return transitionTable;
+    }
+
 }
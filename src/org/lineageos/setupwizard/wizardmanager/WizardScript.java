@@ -11,6 +11,7 @@ import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
 import android.app.Activity;
 import android.content.ContentResolver;
 import android.content.Context;
+import android.content.res.Resources;
 import android.net.Uri;
 import android.os.Parcel;
 import android.os.Parcelable;
@@ -22,12 +23,17 @@ import com.android.internal.util.XmlUtils;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class WizardScript implements Parcelable {
@@ -46,39 +52,110 @@ public class WizardScript implements Parcelable {
     public static final String ATTR_FIRST_ACTION = "firstAction";
     public static final String ATTR_RESULT_CODE = "resultCode";
 
-    private final Map<String, WizardAction> mActions;
+    /** Index returned for ids that are null or not part of the script. */
+    public static final int NO_ACTION = -1;
+
+    // Actions are addressed by dense indices; ids are only looked up at the API boundary.
+    private final WizardAction[] mActions;
+    private final HashMap<String, Integer> mIndices;
     private final String mFirstActionId;
+    private final int mFirstAction;
+    // Per action: the explicit result codes in ascending order, their target indices, and the
+    // target index for any other result code.
+    private final int[][] mResultCodes;
+    private final int[][] mTargets;
+    private final int[] mDefaultTargets;
 
     public WizardScript(Map<String, WizardAction> actions, String firstActionId) {
-        mActions = Collections.unmodifiableMap(actions);
+        final int count = actions.size();
+        mActions = actions.values().toArray(new WizardAction[count]);
+        mIndices = new HashMap<>(count);
+        for (int i = 0; i < count; i++) {
+            mIndices.put(mActions[i].getId(), i);
+        }
         mFirstActionId = firstActionId;
+        mFirstAction = getActionIndex(firstActionId);
+
+        mResultCodes = new int[count][];
+        mTargets = new int[count][];
+        mDefaultTargets = new int[count];
+        for (int i = 0; i < count; i++) {
+            final WizardTransitions transitions = mActions[i].getTransitions();
+            final int size = transitions.size();
+            mResultCodes[i] = new int[size];
+            mTargets[i] = new int[size];
+            for (int j = 0; j < size; j++) {
+                mResultCodes[i][j] = transitions.keyAt(j);
+                mTargets[i][j] = getActionIndex(transitions.valueAt(j));
+            }
+            mDefaultTargets[i] = getActionIndex(transitions.getDefaultAction());
+        }
+    }
+
+    public int getActionCount() {
+        return mActions.length;
+    }
+
+    public WizardAction getAction(int index) {
+        return index != NO_ACTION ? mActions[index] : null;
+    }
+
+    public int getActionIndex(String actionId) {
+        final Integer index = actionId != null ? mIndices.get(actionId) : null;
+        return index != null ? index : NO_ACTION;
     }
 
     public WizardAction getAction(String actionId) {
-        return mActions.get(actionId);
+        return getAction(getActionIndex(actionId));
+    }
+
+    public List<WizardAction> getActions() {
+        return Collections.unmodifiableList(Arrays.asList(mActions));
+    }
+
+    public int getFirstActionIndex() {
+        return mFirstAction;
     }
 
     public WizardAction getFirstAction() {
-        return getAction(mFirstActionId);
+        return getAction(mFirstAction);
     }
 
     public String getFirstActionId() {
         return mFirstActionId;
     }
 
+    /**
+     * @return The index of the action the script transitions to from the action at
+     * {@code index} for the given result code, or {@link #NO_ACTION}.
+     */
+    public int getNextActionIndex(int index, int resultCode) {
+        if (index == NO_ACTION || resultCode == Activity.RESULT_CANCELED) {
+            return NO_ACTION;
+        }
+        final int i = Arrays.binarySearch(mResultCodes[index], resultCode);
+        return i >= 0 ? mTargets[index][i] : mDefaultTargets[index];
+    }
+
+    int[] getResultCodes(int index) {
+        return mResultCodes[index];
+    }
+
+    int getDefaultActionIndex(int index) {
+        return mDefaultTargets[index];
+    }
+
     public WizardAction getNextAction(String currentActionId, int resultCode) {
-        WizardAction wizardAction = null;
-        String nextActionId = getNextActionId(currentActionId, resultCode);
-        if (nextActionId != null) {
-            wizardAction = getAction(nextActionId);
+        if (LOGV) {
+            Log.v(TAG, "getNextAction(" + currentActionId + "," + resultCode + ")");
         }
-        return wizardAction;
+        return getAction(getNextActionIndex(getActionIndex(currentActionId), resultCode));
     }
 
     public String getNextActionId(String currentActionId, int resultCode) {
         String nextActionId = null;
         if (resultCode != Activity.RESULT_CANCELED) {
-            WizardAction wizardAction = mActions.get(currentActionId);
+            WizardAction wizardAction = getAction(currentActionId);
             if (LOGV) {
                 StringBuilder currentAction =
                         new StringBuilder().append("getNextActionId(").append(currentActionId)
@@ -101,20 +178,23 @@ public class WizardScript implements Parcelable {
     }
 
     public void writeToParcel(Parcel dest, int flags) {
-        dest.writeString(this.mFirstActionId);
-        dest.writeTypedList(new ArrayList<>(this.mActions.values()));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            WizardScriptCodec.writeCompact(this, out);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to encode wizard script", e);
+        }
+        dest.writeByteArray(bytes.toByteArray());
     }
 
     public static final Creator<WizardScript> CREATOR = new Creator<>() {
         public WizardScript createFromParcel(Parcel source) {
-            String firstActionId = source.readString();
-            HashMap<String, WizardAction> actions = new HashMap<>();
-            ArrayList<WizardAction> actionList = new ArrayList<>();
-            source.readTypedList(actionList, WizardAction.CREATOR);
-            for (WizardAction action : actionList) {
-                actions.put(action.getId(), action);
+            try {
+                return WizardScriptCodec.readCompact(new DataInputStream(
+                        new ByteArrayInputStream(source.createByteArray())));
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Malformed wizard script parcel", e);
             }
-            return new WizardScript(actions, firstActionId);
         }
 
         public WizardScript[] newArray(int size) {
@@ -132,22 +212,26 @@ public class WizardScript implements Parcelable {
                 xmlPullParser =
                         openResourceIdResult.r.getXml(openResourceIdResult.id);
             } else {
-                InputStream inputStream =
-                        openResourceIdResult.r.openRawResource(openResourceIdResult.id);
-                xmlPullParser = Xml.newPullParser();
-                xmlPullParser.setInput(inputStream, null);
-            }
-
-            int next;
-            do {
-                next = xmlPullParser.next();
-                if (next == XmlPullParser.END_DOCUMENT) {
-                    break;
+                byte[] source;
+                try (InputStream inputStream =
+                        openResourceIdResult.r.openRawResource(openResourceIdResult.id)) {
+                    source = inputStream.readAllBytes();
                 }
+                final long checksum = WizardScriptFormat.checksum(source);
+                WizardScript wizardScript = loadCompiled(openResourceIdResult.r,
+                        openResourceIdResult.id, checksum);
+                if (wizardScript == null) {
+                    // Only overlaid scripts without a compiled form get here.
+                    wizardScript = WizardScriptCache.get(context, checksum);
+                }
+                if (wizardScript == null) {
+                    wizardScript = parse(new ByteArrayInputStream(source));
+                    WizardScriptCache.put(context, checksum, wizardScript);
+                }
+                return wizardScript;
             }
-            while (next != XmlPullParser.START_TAG);
 
-            return parseWizardScript(xmlPullParser);
+            return parseWizardScript(skipToStartTag(xmlPullParser));
         } catch (XmlPullParserException e) {
             Log.e(TAG, "Ill-formatted wizard_script: " + uriString);
             Log.e(TAG, e.getMessage());
@@ -163,32 +247,111 @@ public class WizardScript implements Parcelable {
         }
     }
 
+    /**
+     * Loads the build-time compiled form of a raw script resource, if there is one and it was
+     * compiled from the same source. Device overlays replacing only the XML are caught by the
+     * checksum and fall back to parsing.
+     */
+    private static WizardScript loadCompiled(Resources res, int sourceId, long sourceChecksum) {
+        final int compiledId = res.getIdentifier(
+                res.getResourceEntryName(sourceId) + WizardScriptFormat.COMPILED_SUFFIX,
+                res.getResourceTypeName(sourceId), res.getResourcePackageName(sourceId));
+        if (compiledId == 0) {
+            return null;
+        }
+        try (InputStream inputStream = res.openRawResource(compiledId)) {
+            WizardScript wizardScript = WizardScriptCodec.read(new DataInputStream(
+                    new ByteArrayInputStream(inputStream.readAllBytes())), sourceChecksum);
+            if (LOGV) {
+                Log.v(TAG, "loadCompiled " + res.getResourceEntryName(compiledId)
+                        + (wizardScript != null ? " loaded" : " is stale"));
+            }
+            return wizardScript;
+        } catch (IOException | Resources.NotFoundException e) {
+            Log.w(TAG, "Unable to read compiled wizard_script, falling back to XML", e);
+            return null;
+        }
+    }
+
+    /**
+     * Parses the XML source of a script.
+     */
+    static WizardScript parse(InputStream inputStream)
+            throws XmlPullParserException, IOException {
+        XmlPullParser xmlPullParser = Xml.newPullParser();
+        xmlPullParser.setInput(inputStream, null);
+        return parseWizardScript(skipToStartTag(xmlPullParser));
+    }
+
+    private static XmlPullParser skipToStartTag(XmlPullParser xmlPullParser)
+            throws XmlPullParserException, IOException {
+        int next;
+        do {
+            next = xmlPullParser.next();
+            if (next == XmlPullParser.END_DOCUMENT) {
+                break;
+            }
+        }
+        while (next != XmlPullParser.START_TAG);
+        return xmlPullParser;
+    }
+
+    /**
+     * Parses a {@code <WizardScript>} element in a single pass over its events, then checks
+     * that all action ids are unique and that {@code firstAction} and every transition refer
+     * to an action of the script. Errors carry the position of the offending element.
+     */
     private static WizardScript parseWizardScript(XmlPullParser parser)
             throws XmlPullParserException, IOException {
         String startTag = parser.getName();
         if (!TAG_WIZARD_SCRIPT.equals(startTag)) {
             throw new XmlPullParserException("XML document must start with " +
-                    "<WizardScript> tag; found "
-                    + startTag + " at " + parser.getPositionDescription());
+                    "<WizardScript> tag; found " + startTag, parser, null);
         }
 
         String firstAction = parser.getAttributeValue(WIZARD_SCRIPT_NAMESPACE, ATTR_FIRST_ACTION);
         if (firstAction == null) {
-            throw new XmlPullParserException("WizardScript must define a firstAction");
+            throw new XmlPullParserException("WizardScript must define a firstAction", parser,
+                    null);
         }
+        final int scriptLine = parser.getLineNumber();
 
         HashMap<String, WizardAction> wizardActions = new HashMap<>();
+        HashMap<String, Integer> actionLines = new HashMap<>();
         int type;
         final int depth = parser.getDepth();
-        while (((type = parser.next()) != XmlPullParser.END_TAG ||
-                parser.getDepth() > depth) && type != XmlPullParser.END_DOCUMENT) {
-            final int next = parser.next();
-            if (next != XmlPullParser.END_TAG || next != XmlPullParser.TEXT) {
-                if (TAG_WIZARD_ACTION.equals(parser.getName())) {
-                    WizardAction action = WizardAction.parseWizardAction(parser);
-                    wizardActions.put(action.getId(), action);
-                } else {
-                    XmlUtils.skipCurrentTag(parser);
+        while ((type = parser.next()) != XmlPullParser.END_DOCUMENT
+                && (type != XmlPullParser.END_TAG || parser.getDepth() > depth)) {
+            if (type != XmlPullParser.START_TAG) {
+                continue;
+            }
+            if (TAG_WIZARD_ACTION.equals(parser.getName())) {
+                final int line = parser.getLineNumber();
+                WizardAction action = WizardAction.parseWizardAction(parser);
+                Integer previousLine = actionLines.put(action.getId(), line);
+                if (previousLine != null) {
+                    throw new XmlPullParserException("Duplicate WizardAction id '"
+                            + action.getId() + "' at line " + line + ", first defined at line "
+                            + previousLine);
+                }
+                wizardActions.put(action.getId(), action);
+            } else {
+                XmlUtils.skipCurrentTag(parser);
+            }
+        }
+
+        if (!wizardActions.containsKey(firstAction)) {
+            throw new XmlPullParserException("firstAction '" + firstAction
+                    + "' at line " + scriptLine + " is not a WizardAction");
+        }
+        for (WizardAction action : wizardActions.values()) {
+            WizardTransitions transitions = action.getTransitions();
+            for (int i = -1; i < transitions.size(); i++) {
+                String target = i < 0 ? transitions.getDefaultAction() : transitions.valueAt(i);
+                if (target != null && !wizardActions.containsKey(target)) {
+                    throw new XmlPullParserException("WizardAction '" + action.getId()
+                            + "' at line " + actionLines.get(action.getId())
+                            + " refers to unknown action '" + target + "'");
                 }
             }
         }
@@ -0,0 +1,140 @@
+/*
+ * SPDX-FileCopyrightText: 2026 The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.lineageos.setupwizard.wizardmanager;
+
+import android.content.Context;
+import android.os.Build;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import org.lineageos.setupwizard.SetupWizardApp;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * On-disk cache of parsed wizard scripts, so that a restarted wizard process does not have to
+ * parse the script XML again. It is only consulted for scripts without a compiled form.
+ *
+ * Entries are keyed by the checksum of the script source and by the build that parsed it, so
+ * neither an updated or overlaid script nor a changed parser hits a stale entry. Entries of
+ * other builds are deleted on the next write.
+ */
+final class WizardScriptCache {
+
+    private static final String TAG = "WizardScriptCache";
+
+    private static final String CACHE_DIR = "wizard_scripts";
+
+    // Lookups in this process.
+    private static final AtomicInteger sHits = new AtomicInteger();
+    private static final AtomicInteger sMisses = new AtomicInteger();
+
+    private WizardScriptCache() {
+    }
+
+    /**
+     * @return The cached script parsed from the source with the given checksum, or null. Reads
+     * from disk on the calling thread.
+     */
+    static WizardScript get(Context context, long sourceChecksum) {
+        AtomicFile file = getFile(context, sourceChecksum);
+        WizardScript wizardScript = null;
+        try {
+            wizardScript = WizardScriptCodec.read(new DataInputStream(
+                    new ByteArrayInputStream(file.readFully())), sourceChecksum);
+        } catch (FileNotFoundException ignored) {
+        } catch (IOException e) {
+            Log.w(TAG, "Discarding unreadable cache entry " + file.getBaseFile(), e);
+            file.delete();
+        }
+        final boolean hit = wizardScript != null;
+        (hit ? sHits : sMisses).incrementAndGet();
+        Log.i(TAG, "lookup " + (hit ? "hit" : "miss") + " for " + file.getBaseFile().getName()
+                + ", hits=" + sHits.get() + " misses=" + sMisses.get());
+        return wizardScript;
+    }
+
+    /**
+     * Writes the entry for the script parsed from the source with the given checksum on the app
+     * executor.
+     */
+    static void put(Context context, long sourceChecksum, WizardScript wizardScript) {
+        if (wizardScript == null) {
+            return;
+        }
+        final Context appContext = context.getApplicationContext();
+        SetupWizardApp.getExecutor().execute(
+                () -> write(appContext, sourceChecksum, wizardScript));
+    }
+
+    /**
+     * Deletes all entries. Only to be called once setup is done, on a background thread.
+     */
+    static void clear(Context context) {
+        File[] files = getCacheDir(context).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    private static void write(Context context, long sourceChecksum, WizardScript wizardScript) {
+        deleteOtherBuilds(context);
+        AtomicFile file = getFile(context, sourceChecksum);
+        file.getBaseFile().getParentFile().mkdirs();
+        FileOutputStream fos = null;
+        try {
+            fos = file.startWrite();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            WizardScriptCodec.write(wizardScript, sourceChecksum, out);
+            out.flush();
+            file.finishWrite(fos);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write cache entry " + file.getBaseFile(), e);
+            file.failWrite(fos);
+        }
+    }
+
+    private static void deleteOtherBuilds(Context context) {
+        final String suffix = getBuildSuffix(context);
+        File[] files = getCacheDir(context).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                // Also covers the backup and new files of AtomicFile.
+                if (!file.getName().contains(suffix)) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    private static File getCacheDir(Context context) {
+        return new File(context.getNoBackupFilesDir(), CACHE_DIR);
+    }
+
+    private static AtomicFile getFile(Context context, long sourceChecksum) {
+        return new AtomicFile(new File(getCacheDir(context),
+                Long.toHexString(sourceChecksum) + getBuildSuffix(context)));
+    }
+
+    /**
+     * Identifies the parser: the app version for updates of the app alone, and the build
+     * fingerprint for system updates, which usually keep the version of platform apps.
+     */
+    private static String getBuildSuffix(Context context) {
+        return "-" + context.getApplicationInfo().longVersionCode
+                + "-" + Integer.toHexString(Build.FINGERPRINT.hashCode());
+    }
+}
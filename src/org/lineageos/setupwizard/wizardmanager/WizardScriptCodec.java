@@ -0,0 +1,151 @@
+/*
+ * SPDX-FileCopyrightText: 2026 The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.lineageos.setupwizard.wizardmanager;
+
+import static org.lineageos.setupwizard.wizardmanager.WizardScript.NO_ACTION;
+import static org.lineageos.setupwizard.wizardmanager.WizardScriptFormat.readSignedVarint;
+import static org.lineageos.setupwizard.wizardmanager.WizardScriptFormat.readString;
+import static org.lineageos.setupwizard.wizardmanager.WizardScriptFormat.readVarint;
+import static org.lineageos.setupwizard.wizardmanager.WizardScriptFormat.writeSignedVarint;
+import static org.lineageos.setupwizard.wizardmanager.WizardScriptFormat.writeString;
+import static org.lineageos.setupwizard.wizardmanager.WizardScriptFormat.writeVarint;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+
+/**
+ * Reads and writes {@link WizardScript}s in the compiled format described by
+ * {@link WizardScriptFormat}, and in the compact form used to parcel them.
+ */
+final class WizardScriptCodec {
+
+    private WizardScriptCodec() {
+    }
+
+    /**
+     * @return The decoded script, or null if the data was written with another version of the
+     * format or compiled from a different source than the one with the given checksum. Nothing
+     * after the header is read in that case.
+     */
+    static WizardScript read(DataInput in, long sourceChecksum) throws IOException {
+        if (in.readInt() != WizardScriptFormat.MAGIC) {
+            throw new IOException("Not a compiled wizard script");
+        }
+        if (in.readInt() != WizardScriptFormat.VERSION) {
+            return null;
+        }
+        if (in.readLong() != sourceChecksum) {
+            return null;
+        }
+
+        String firstActionId = readString(in);
+        int actionCount = readCount(in);
+        HashMap<String, WizardAction> actions = new HashMap<>(actionCount);
+        for (int i = 0; i < actionCount; i++) {
+            String id = readString(in);
+            String uri = readString(in);
+            WizardTransitions transitions = new WizardTransitions();
+            transitions.setDefaultAction(readString(in));
+            int transitionCount = readCount(in);
+            for (int j = 0; j < transitionCount; j++) {
+                int resultCode = in.readInt();
+                transitions.put(resultCode, readString(in));
+            }
+            actions.put(id, new WizardAction(id, uri, transitions));
+        }
+        return new WizardScript(actions, firstActionId);
+    }
+
+    static void write(WizardScript wizardScript, long sourceChecksum, DataOutput out)
+            throws IOException {
+        WizardScriptFormat.writeHeader(out, sourceChecksum, wizardScript.getFirstActionId(),
+                wizardScript.getActions().size());
+        for (WizardAction action : wizardScript.getActions()) {
+            WizardTransitions transitions = action.getTransitions();
+            final int[] resultCodes = new int[transitions.size()];
+            final String[] resultActions = new String[transitions.size()];
+            for (int i = 0; i < transitions.size(); i++) {
+                resultCodes[i] = transitions.keyAt(i);
+                resultActions[i] = transitions.valueAt(i);
+            }
+            WizardScriptFormat.writeAction(out, action.getId(), action.getUri(),
+                    transitions.getDefaultAction(), resultCodes, resultActions);
+        }
+    }
+
+    /**
+     * Writes the compact form: the action ids form the string table, and transitions refer to
+     * their targets by index. Indices and result codes are varints. Targets that are not part
+     * of the script are written as no action.
+     */
+    static void writeCompact(WizardScript wizardScript, DataOutput out) throws IOException {
+        final int count = wizardScript.getActionCount();
+        writeVarint(out, count);
+        for (int i = 0; i < count; i++) {
+            WizardAction action = wizardScript.getAction(i);
+            writeString(out, action.getId());
+            writeString(out, action.getUri());
+        }
+        writeString(out, wizardScript.getFirstActionId());
+        for (int i = 0; i < count; i++) {
+            writeIndex(out, wizardScript.getDefaultActionIndex(i));
+            final int[] resultCodes = wizardScript.getResultCodes(i);
+            writeVarint(out, resultCodes.length);
+            for (int resultCode : resultCodes) {
+                writeSignedVarint(out, resultCode);
+                writeIndex(out, wizardScript.getNextActionIndex(i, resultCode));
+            }
+        }
+    }
+
+    static WizardScript readCompact(DataInput in) throws IOException {
+        final int count = readVarint(in);
+        final String[] ids = new String[count];
+        final String[] uris = new String[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = readString(in);
+            uris[i] = readString(in);
+        }
+        final String firstActionId = readString(in);
+        HashMap<String, WizardAction> actions = new HashMap<>(count);
+        for (int i = 0; i < count; i++) {
+            WizardTransitions transitions = new WizardTransitions();
+            transitions.setDefaultAction(readId(in, ids));
+            final int transitionCount = readVarint(in);
+            for (int j = 0; j < transitionCount; j++) {
+                final int resultCode = readSignedVarint(in);
+                transitions.put(resultCode, readId(in, ids));
+            }
+            actions.put(ids[i], new WizardAction(ids[i], uris[i], transitions));
+        }
+        return new WizardScript(actions, firstActionId);
+    }
+
+    private static int readCount(DataInput in) throws IOException {
+        final int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Malformed count " + count);
+        }
+        return count;
+    }
+
+    private static void writeIndex(DataOutput out, int index) throws IOException {
+        writeVarint(out, index + 1);
+    }
+
+    private static String readId(DataInput in, String[] ids) throws IOException {
+        final int index = readVarint(in) - 1;
+        if (index == NO_ACTION) {
+            return null;
+        }
+        if (index < 0 || index >= ids.length) {
+            throw new IOException("Action index out of range: " + index);
+        }
+        return ids[index];
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * SPDX-FileCopyrightText: 2026 The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.lineageos.setupwizard.wizardmanager;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+/**
+ * Constants and primitives of the compiled wizard script format, and its writer.
+ *
+ * This class is built as a library shared by the app and the host-side script compiler, so
+ * it must only depend on the Java standard library.
+ *
+ * A compiled script is a header, see {@link #writeHeader}, followed by its actions, see
+ * {@link #writeAction}.
+ */
+public final class WizardScriptFormat {
+
+    /** "WIZS" */
+    public static final int MAGIC = 0x57495a53;
+    /**
+     * Version of the format, written right after {@link #MAGIC}. Readers ignore data of any
+     * other version. Bump it whenever the encoding changes, or whenever the parser or its
+     * validation change what a script compiles to.
+     */
+    public static final int VERSION = 2;
+
+    /** Suffix appended to the entry name of a script to find its compiled raw resource. */
+    public static final String COMPILED_SUFFIX = "_compiled";
+
+    private WizardScriptFormat() {
+    }
+
+    public static long checksum(byte[] source) {
+        CRC32 crc = new CRC32();
+        crc.update(source, 0, source.length);
+        return crc.getValue();
+    }
+
+    /**
+     * Writes the header of a compiled script, to be followed by {@code actionCount} actions.
+     */
+    public static void writeHeader(DataOutput out, long sourceChecksum, String firstActionId,
+            int actionCount) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(sourceChecksum);
+        writeString(out, firstActionId);
+        out.writeInt(actionCount);
+    }
+
+    /**
+     * Writes an action of a compiled script. {@code resultActions} holds the action to go to
+     * for the result code at the same index of {@code resultCodes}.
+     */
+    public static void writeAction(DataOutput out, String id, String uri, String defaultAction,
+            int[] resultCodes, String[] resultActions) throws IOException {
+        writeString(out, id);
+        writeString(out, uri);
+        writeString(out, defaultAction);
+        out.writeInt(resultCodes.length);
+        for (int i = 0; i < resultCodes.length; i++) {
+            out.writeInt(resultCodes[i]);
+            writeString(out, resultActions[i]);
+        }
+    }
+
+    public static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /** Writes an unsigned LEB128 varint. */
+    public static void writeVarint(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    public static int readVarint(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /** Writes a varint that stays short for small negative values too. */
+    public static void writeSignedVarint(DataOutput out, int value) throws IOException {
+        writeVarint(out, (value << 1) ^ (value >> 31));
+    }
+
+    public static int readSignedVarint(DataInput in) throws IOException {
+        final int value = readVarint(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * SPDX-FileCopyrightText: 2026 The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.lineageos.setupwizard.wizardmanager;
+
+import static org.lineageos.setupwizard.SetupWizardApp.LOGV;
+import static org.lineageos.setupwizard.wizardmanager.WizardScript.NO_ACTION;
+
+import android.app.Activity;
+import android.content.Context;
+import android.util.Log;
+
+import com.google.android.setupcompat.util.ResultCodes;
+
+import java.util.Arrays;
+
+/**
+ * A {@link WizardScript} flattened against an {@link ActionAvailability} snapshot.
+ *
+ * For every action and result code the table directly stores the action the wizard ends up
+ * at, after following {@link ResultCodes#RESULT_ACTIVITY_NOT_FOUND} past unavailable actions,
+ * so that a transition is a single lookup.
+ */
+final class WizardTransitionTable {
+
+    private static final String TAG = WizardTransitionTable.class.getSimpleName();
+
+    private final int mGeneration;
+    private final WizardScript mWizardScript;
+    private final int mFirstAction;
+    // Per action: the resolved target for each result code the script knows for it, and for
+    // any other result code.
+    private final int[][] mTargets;
+    private final int[] mDefaultTargets;
+    // Per action: the explicit result codes in ascending order, shared with the script.
+    private final int[][] mResultCodes;
+
+    private WizardTransitionTable(Context context, WizardScript wizardScript, int generation) {
+        mGeneration = generation;
+        mWizardScript = wizardScript;
+        final int count = wizardScript.getActionCount();
+
+        // The first available action reached from each action, including itself.
+        final int[] available = new int[count];
+        for (int i = 0; i < count; i++) {
+            available[i] = findAvailable(context, i);
+        }
+
+        mFirstAction = resolve(available, wizardScript.getFirstActionIndex());
+        mResultCodes = new int[count][];
+        mTargets = new int[count][];
+        mDefaultTargets = new int[count];
+        for (int i = 0; i < count; i++) {
+            mResultCodes[i] = wizardScript.getResultCodes(i);
+            mTargets[i] = new int[mResultCodes[i].length];
+            for (int j = 0; j < mResultCodes[i].length; j++) {
+                mTargets[i][j] = resolve(available,
+                        wizardScript.getNextActionIndex(i, mResultCodes[i][j]));
+            }
+            mDefaultTargets[i] = resolve(available, wizardScript.getDefaultActionIndex(i));
+        }
+    }
+
+    static WizardTransitionTable build(Context context, WizardScript wizardScript) {
+        final int generation = ActionAvailability.getGeneration();
+        ActionAvailability.resolve(context, wizardScript);
+        return new WizardTransitionTable(context, wizardScript, generation);
+    }
+
+    /**
+     * @return Whether component or package changes since this table was built may have
+     * changed its targets.
+     */
+    boolean isStale() {
+        return mGeneration != ActionAvailability.getGeneration();
+    }
+
+    WizardAction getFirstAction() {
+        return mWizardScript.getAction(mFirstAction);
+    }
+
+    WizardAction getNextAction(String currentActionId, int resultCode) {
+        return mWizardScript.getAction(
+                getNextActionIndex(mWizardScript.getActionIndex(currentActionId), resultCode));
+    }
+
+    int getNextActionIndex(int index, int resultCode) {
+        if (index == NO_ACTION || resultCode == Activity.RESULT_CANCELED) {
+            return NO_ACTION;
+        }
+        final int i = Arrays.binarySearch(mResultCodes[index], resultCode);
+        return i >= 0 ? mTargets[index][i] : mDefaultTargets[index];
+    }
+
+    private int findAvailable(Context context, int index) {
+        int hops = 0;
+        while (index != NO_ACTION
+                && !ActionAvailability.isAvailable(context, mWizardScript.getAction(index))) {
+            if (LOGV) {
+                Log.v(TAG, "action not available " + mWizardScript.getAction(index));
+            }
+            if (++hops > mWizardScript.getActionCount()) {
+                Log.e(TAG, "Unavailable actions form a cycle at "
+                        + mWizardScript.getAction(index).getId());
+                return NO_ACTION;
+            }
+            index = mWizardScript.getNextActionIndex(index,
+                    ResultCodes.RESULT_ACTIVITY_NOT_FOUND);
+        }
+        return index;
+    }
+
+    private static int resolve(int[] available, int index) {
+        return index != NO_ACTION ? available[index] : NO_ACTION;
+    }
+}
@@ -25,12 +25,7 @@ public class WizardTransitions extends SparseArray<String> implements Parcelable
 
     public static final Creator<WizardTransitions> CREATOR = new Creator<>() {
         public WizardTransitions createFromParcel(Parcel source) {
-            WizardTransitions transitions = new WizardTransitions(source);
-            SparseArray<String> actions = source.readSparseArray(null, String.class);
-            for (int i = 0; i < actions.size(); i++) {
-                transitions.put(actions.keyAt(i), actions.valueAt(i));
-            }
-            return transitions;
+            return new WizardTransitions(source);
         }
 
         public WizardTransitions[] newArray(int size) {
@@ -45,6 +40,10 @@ public class WizardTransitions extends SparseArray<String> implements Parcelable
         mDefaultAction = action;
     }
 
+    public String getDefaultAction() {
+        return mDefaultAction;
+    }
+
     public String getAction(int resultCode) {
         return get(resultCode, mDefaultAction);
     }
@@ -86,16 +85,20 @@ public class WizardTransitions extends SparseArray<String> implements Parcelable
     @Override
     public void writeToParcel(Parcel dest, int flags) {
         dest.writeString(mDefaultAction);
-        int size = size();
-        SparseArray<String> sparseArray = new SparseArray<>(size);
+        final int size = size();
+        dest.writeInt(size);
         for (int i = 0; i < size; i++) {
-            sparseArray.put(keyAt(i), valueAt(i));
+            dest.writeInt(keyAt(i));
+            dest.writeString(valueAt(i));
         }
-        dest.writeSparseArray(sparseArray);
     }
 
     protected WizardTransitions(Parcel in) {
         mDefaultAction = in.readString();
+        final int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            append(in.readInt(), in.readString());
+        }
     }
 
 }
@@ -0,0 +1,114 @@
+/*
+ * SPDX-FileCopyrightText: 2026 The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.lineageos.setupwizard.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.os.Looper;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+@RunWith(RobolectricTestRunner.class)
+public class SetupCommitTest {
+
+    private static final long TIMEOUT_MS = 5000;
+    private static final long POLL_INTERVAL_MS = 10;
+
+    private Context mContext;
+    private Consumer<Context> mMarkSetupComplete;
+    private final AtomicInteger mMarkCount = new AtomicInteger();
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        mMarkSetupComplete = SetupCommit.sMarkSetupComplete;
+        SetupCommit.sCommit = null;
+    }
+
+    @After
+    public void tearDown() {
+        SetupCommit.sMarkSetupComplete = mMarkSetupComplete;
+        SetupCommit.sCommit = null;
+    }
+
+    @Test
+    public void awaitRunsThenOnceCommitted() {
+        SetupCommit.sMarkSetupComplete = context -> mMarkCount.incrementAndGet();
+        final AtomicBoolean ran = new AtomicBoolean();
+
+        SetupCommit.await(mContext, () -> ran.set(true));
+        idleMainLooperUntil(ran::get);
+
+        assertEquals(1, mMarkCount.get());
+    }
+
+    @Test
+    public void startAfterSuccessReturnsSameCommit() throws Exception {
+        SetupCommit.sMarkSetupComplete = context -> mMarkCount.incrementAndGet();
+        final AtomicBoolean ran = new AtomicBoolean();
+
+        final CompletableFuture<Void> first = SetupCommit.start(mContext);
+        SetupCommit.await(mContext, () -> ran.set(true));
+        idleMainLooperUntil(ran::get);
+        first.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        assertSame(first, SetupCommit.start(mContext));
+        assertEquals(1, mMarkCount.get());
+    }
+
+    @Test
+    public void awaitMarksSetupCompleteAgainAfterFailure() {
+        // Fails in the background, succeeds on the main thread.
+        SetupCommit.sMarkSetupComplete = context -> {
+            if (mMarkCount.incrementAndGet() == 1) {
+                throw new IllegalStateException("Settings provider unavailable");
+            }
+            assertSame(Looper.getMainLooper(), Looper.myLooper());
+        };
+        final AtomicBoolean ran = new AtomicBoolean();
+
+        final CompletableFuture<Void> failed = SetupCommit.start(mContext);
+        SetupCommit.await(mContext, () -> ran.set(true));
+        idleMainLooperUntil(ran::get);
+
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals(2, mMarkCount.get());
+        // The failed commit is dropped, so that it can be retried.
+        assertNotSame(failed, SetupCommit.start(mContext));
+    }
+
+    // The commit completes on the app executor, so poll in real time. The main looper clock
+    // stands still, which keeps the timeout fallback of await() from running.
+    private static void idleMainLooperUntil(BooleanSupplier condition) {
+        for (int i = 0; !condition.getAsBoolean(); i++) {
+            assertTrue("Timed out", i < TIMEOUT_MS / POLL_INTERVAL_MS);
+            shadowOf(Looper.getMainLooper()).idle();
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * SPDX-FileCopyrightText: 2026 The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.lineageos.setupwizard.widget;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class PrefixIndexTest {
+
+    // Vietnamese with its diacritics typed as combining marks, as in NFD.
+    private static final String DECOMPOSED = "Tie\u0302\u0301ng Vie\u0323\u0302t";
+
+    private static final String[] VALUES = {
+            "English", "Español", "Straße", DECOMPOSED, "Estonian",
+    };
+
+    @Test
+    public void findsFirstValueInOriginalOrder() {
+        final PrefixIndex index = new PrefixIndex(VALUES);
+        assertEquals(1, index.find("es"));
+        assertEquals(1, index.find("ESPA"));
+        assertEquals(4, index.find("est"));
+        assertEquals(-1, index.find("x"));
+    }
+
+    @Test
+    public void matchesPrecomposedDiacritics() {
+        assertEquals(1, new PrefixIndex(VALUES).find("espan"));
+        assertEquals(5, PrefixIndex.getMatchEnd("Español", "espan"));
+    }
+
+    @Test
+    public void matchesSharpS() {
+        final PrefixIndex index = new PrefixIndex(VALUES);
+        assertEquals(2, index.find("strass"));
+        assertEquals(2, index.find("straß"));
+        // "ß" folds to two characters, but is a single one of the value.
+        assertEquals(4, PrefixIndex.getMatchEnd("Straße", "stra"));
+        assertEquals(5, PrefixIndex.getMatchEnd("Straße", "stras"));
+        assertEquals(5, PrefixIndex.getMatchEnd("Straße", "strass"));
+        assertEquals(6, PrefixIndex.getMatchEnd("Straße", "strasse"));
+    }
+
+    @Test
+    public void matchesCombiningMarks() {
+        final PrefixIndex index = new PrefixIndex(VALUES);
+        assertEquals(3, index.find("tieng"));
+        assertEquals(3, index.find("Ti\u1ebfng V"));
+        // The marks following a match belong to it.
+        assertEquals(5, PrefixIndex.getMatchEnd(DECOMPOSED, "tie"));
+        assertEquals(7, PrefixIndex.getMatchEnd(DECOMPOSED, "tieng"));
+        assertEquals(DECOMPOSED.length(), PrefixIndex.getMatchEnd(DECOMPOSED, "tieng viet"));
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * SPDX-FileCopyrightText: 2026 The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.lineageos.setupwizard.wizardmanager;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import android.content.res.Resources;
+import android.os.Parcel;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.lineageos.setupwizard.R;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Checks that scripts come back from the compiled and the compact encoding exactly as they were
+ * parsed from XML, including the scripts compiled at build time by the host compiler.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class WizardScriptCodecTest {
+
+    static final int[] SCRIPTS = {
+            R.raw.lineage_wizard_script,
+            R.raw.lineage_wizard_script_managed_profile,
+            R.raw.lineage_wizard_script_user,
+    };
+
+    @Test
+    public void compiledRoundTrip() throws Exception {
+        for (int script : SCRIPTS) {
+            final byte[] source = readRaw(script);
+            final long checksum = WizardScriptFormat.checksum(source);
+            WizardScript parsed = WizardScript.parse(new ByteArrayInputStream(source));
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            WizardScriptCodec.write(parsed, checksum, new DataOutputStream(bytes));
+            WizardScript decoded = WizardScriptCodec.read(new DataInputStream(
+                    new ByteArrayInputStream(bytes.toByteArray())), checksum);
+
+            assertSameScript(parsed, decoded);
+        }
+    }
+
+    @Test
+    public void buildTimeCompiledScriptsMatchSource() throws Exception {
+        final Resources res = ApplicationProvider.getApplicationContext().getResources();
+        for (int script : SCRIPTS) {
+            final byte[] source = readRaw(script);
+            final int compiled = res.getIdentifier(
+                    res.getResourceEntryName(script) + WizardScriptFormat.COMPILED_SUFFIX,
+                    "raw", res.getResourcePackageName(script));
+            assertNotEquals(res.getResourceEntryName(script), 0, compiled);
+
+            WizardScript decoded = WizardScriptCodec.read(new DataInputStream(
+                    new ByteArrayInputStream(readRaw(compiled))),
+                    WizardScriptFormat.checksum(source));
+
+            assertNotNull(res.getResourceEntryName(script), decoded);
+            assertSameScript(WizardScript.parse(new ByteArrayInputStream(source)), decoded);
+        }
+    }
+
+    @Test
+    public void compiledFromOtherSourceIsIgnored() throws Exception {
+        final byte[] source = readRaw(R.raw.lineage_wizard_script);
+        final long checksum = WizardScriptFormat.checksum(source);
+        WizardScript parsed = WizardScript.parse(new ByteArrayInputStream(source));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        WizardScriptCodec.write(parsed, checksum, new DataOutputStream(bytes));
+
+        assertNull(WizardScriptCodec.read(new DataInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())), checksum + 1));
+    }
+
+    @Test
+    public void compiledWithOtherVersionIsIgnored() throws Exception {
+        final byte[] source = readRaw(R.raw.lineage_wizard_script);
+        final long checksum = WizardScriptFormat.checksum(source);
+        WizardScript parsed = WizardScript.parse(new ByteArrayInputStream(source));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        WizardScriptCodec.write(parsed, checksum, new DataOutputStream(bytes));
+        final byte[] data = bytes.toByteArray();
+        // The version follows the magic.
+        ByteBuffer.wrap(data).putInt(Integer.BYTES, WizardScriptFormat.VERSION - 1);
+
+        assertNull(WizardScriptCodec.read(new DataInputStream(
+                new ByteArrayInputStream(data)), checksum));
+    }
+
+    @Test
+    public void compactRoundTrip() throws Exception {
+        for (int script : SCRIPTS) {
+            WizardScript parsed = WizardScript.parse(new ByteArrayInputStream(readRaw(script)));
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            WizardScriptCodec.writeCompact(parsed, new DataOutputStream(bytes));
+            WizardScript decoded = WizardScriptCodec.readCompact(new DataInputStream(
+                    new ByteArrayInputStream(bytes.toByteArray())));
+
+            assertSameScript(parsed, decoded);
+        }
+    }
+
+    @Test
+    public void parcelRoundTrip() throws Exception {
+        for (int script : SCRIPTS) {
+            WizardScript parsed = WizardScript.parse(new ByteArrayInputStream(readRaw(script)));
+
+            Parcel parcel = Parcel.obtain();
+            try {
+                parsed.writeToParcel(parcel, 0);
+                parcel.setDataPosition(0);
+                assertSameScript(parsed, WizardScript.CREATOR.createFromParcel(parcel));
+            } finally {
+                parcel.recycle();
+            }
+        }
+    }
+
+    static byte[] readRaw(int id) throws IOException {
+        try (InputStream in = ApplicationProvider.getApplicationContext().getResources()
+                .openRawResource(id)) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Compares scripts by action id, since the order of the actions is not part of a script.
+     */
+    static void assertSameScript(WizardScript expected, WizardScript actual) {
+        assertEquals(expected.getActionCount(), actual.getActionCount());
+        assertEquals(expected.getFirstActionId(), actual.getFirstActionId());
+        for (WizardAction expectedAction : expected.getActions()) {
+            final String id = expectedAction.getId();
+            final int expectedIndex = expected.getActionIndex(id);
+            final int actualIndex = actual.getActionIndex(id);
+            assertEquals(id, expectedAction, actual.getAction(actualIndex));
+            assertArrayEquals(id, expected.getResultCodes(expectedIndex),
+                    actual.getResultCodes(actualIndex));
+            for (int resultCode : expected.getResultCodes(expectedIndex)) {
+                assertEquals(id + " " + resultCode, expectedAction.getNextAction(resultCode),
+                        actual.getAction(actualIndex).getNextAction(resultCode));
+                assertSameAction(expected.getNextActionIndex(expectedIndex, resultCode), expected,
+                        actual.getNextActionIndex(actualIndex, resultCode), actual);
+            }
+            assertSameAction(expected.getDefaultActionIndex(expectedIndex), expected,
+                    actual.getDefaultActionIndex(actualIndex), actual);
+        }
+    }
+
+    private static void assertSameAction(int expectedIndex, WizardScript expected,
+            int actualIndex, WizardScript actual) {
+        final WizardAction expectedAction = expected.getAction(expectedIndex);
+        final WizardAction actualAction = actual.getAction(actualIndex);
+        assertEquals(expectedAction != null ? expectedAction.getId() : null,
+                actualAction != null ? actualAction.getId() : null);
+    }
+}
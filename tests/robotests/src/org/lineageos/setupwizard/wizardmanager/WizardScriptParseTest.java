@@ -0,0 +1,118 @@
+/*
+ * SPDX-FileCopyrightText: 2026 The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.lineageos.setupwizard.wizardmanager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.app.Activity;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+@RunWith(RobolectricTestRunner.class)
+public class WizardScriptParseTest {
+
+    private static final String HEADER = "<WizardScript xmlns:wizard="
+            + "\"http://schemas.android.com/apk/res/com.google.android.setupwizard\"";
+
+    @Test
+    public void parsesTransitions() throws Exception {
+        WizardScript script = parse(HEADER + " wizard:firstAction=\"a\">\n"
+                + "  <WizardAction id=\"a\" wizard:uri=\"intent:#Intent;action=A;end\">\n"
+                + "    <result wizard:action=\"c\" wizard:resultCode=\"101\" />\n"
+                + "    <result wizard:action=\"b\" />\n"
+                + "  </WizardAction>\n"
+                + "  <WizardAction id=\"b\" wizard:uri=\"intent:#Intent;action=B;end\" />\n"
+                + "  <WizardAction id=\"c\" wizard:uri=\"intent:#Intent;action=C;end\">\n"
+                + "    <result wizard:action=\"a\" />\n"
+                + "  </WizardAction>\n"
+                + "</WizardScript>\n");
+
+        assertEquals(3, script.getActionCount());
+        assertEquals("a", script.getFirstAction().getId());
+        assertEquals("c", script.getNextAction("a", 101).getId());
+        assertEquals("b", script.getNextAction("a", Activity.RESULT_OK).getId());
+        assertNull(script.getNextAction("a", Activity.RESULT_CANCELED));
+        assertNull(script.getNextAction("b", Activity.RESULT_OK));
+        assertEquals("a", script.getNextAction("c", 101).getId());
+    }
+
+    @Test
+    public void parsesShippedScripts() throws Exception {
+        for (int id : WizardScriptCodecTest.SCRIPTS) {
+            WizardScript script = WizardScript.parse(
+                    new ByteArrayInputStream(WizardScriptCodecTest.readRaw(id)));
+            assertTrue(script.getActionCount() > 0);
+            assertEquals(script.getFirstActionId(), script.getFirstAction().getId());
+        }
+    }
+
+    @Test
+    public void rejectsMissingFirstAction() {
+        assertRejected(HEADER + ">\n"
+                + "  <WizardAction id=\"a\" wizard:uri=\"intent:#Intent;action=A;end\" />\n"
+                + "</WizardScript>\n", "must define a firstAction");
+    }
+
+    @Test
+    public void rejectsUnknownFirstAction() {
+        assertRejected(HEADER + " wizard:firstAction=\"b\">\n"
+                + "  <WizardAction id=\"a\" wizard:uri=\"intent:#Intent;action=A;end\" />\n"
+                + "</WizardScript>\n", "firstAction 'b' at line 1 is not a WizardAction");
+    }
+
+    @Test
+    public void rejectsDuplicateId() {
+        assertRejected(HEADER + " wizard:firstAction=\"a\">\n"
+                + "  <WizardAction id=\"a\" wizard:uri=\"intent:#Intent;action=A;end\" />\n"
+                + "  <WizardAction id=\"a\" wizard:uri=\"intent:#Intent;action=B;end\" />\n"
+                + "</WizardScript>\n",
+                "Duplicate WizardAction id 'a' at line 3, first defined at line 2");
+    }
+
+    @Test
+    public void rejectsUnknownTarget() {
+        assertRejected(HEADER + " wizard:firstAction=\"a\">\n"
+                + "  <WizardAction id=\"a\" wizard:uri=\"intent:#Intent;action=A;end\">\n"
+                + "    <result wizard:action=\"missing\" wizard:resultCode=\"1\" />\n"
+                + "  </WizardAction>\n"
+                + "</WizardScript>\n",
+                "WizardAction 'a' at line 2 refers to unknown action 'missing'");
+    }
+
+    @Test
+    public void rejectsInvalidResultCode() {
+        assertRejected(HEADER + " wizard:firstAction=\"a\">\n"
+                + "  <WizardAction id=\"a\" wizard:uri=\"intent:#Intent;action=A;end\">\n"
+                + "    <result wizard:action=\"a\" wizard:resultCode=\"ok\" />\n"
+                + "  </WizardAction>\n"
+                + "</WizardScript>\n", "Invalid resultCode 'ok'");
+    }
+
+    private static WizardScript parse(String xml) throws Exception {
+        return WizardScript.parse(
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void assertRejected(String xml, String message) {
+        try {
+            parse(xml);
+            fail("Expected the script to be rejected with: " + message);
+        } catch (XmlPullParserException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+}
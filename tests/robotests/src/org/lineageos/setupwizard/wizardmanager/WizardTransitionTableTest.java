@@ -0,0 +1,240 @@
+/*
+ * SPDX-FileCopyrightText: 2026 The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.lineageos.setupwizard.wizardmanager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Activity;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.pm.ActivityInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.google.android.setupcompat.util.ResultCodes;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowPackageManager;
+
+import java.io.ByteArrayInputStream;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Checks that the flattened transition table takes the same transitions as following the
+ * parsed script one action at a time and skipping unavailable actions, which is what
+ * WizardManager did before the table existed.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class WizardTransitionTableTest {
+
+    private static final String TEST_PACKAGE = "org.lineageos.setupwizard.test";
+
+    private static final long TIMEOUT_MS = 5000;
+    private static final long POLL_INTERVAL_MS = 10;
+
+    private Context mContext;
+    private ShadowPackageManager mPackageManager;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        mPackageManager = shadowOf(mContext.getPackageManager());
+        ActionAvailability.invalidate();
+    }
+
+    @After
+    public void tearDown() {
+        ActionAvailability.invalidate();
+    }
+
+    @Test
+    public void allActionsAvailable() throws Exception {
+        for (int id : WizardScriptCodecTest.SCRIPTS) {
+            WizardScript script = loadScript(id);
+            assertEquivalent(script, allIds(script));
+        }
+    }
+
+    @Test
+    public void unavailableActionsAreSkipped() throws Exception {
+        final Random random = new Random(0);
+        for (int id : WizardScriptCodecTest.SCRIPTS) {
+            WizardScript script = loadScript(id);
+            for (int i = 0; i < 20; i++) {
+                HashSet<String> available = new HashSet<>();
+                for (WizardAction action : script.getActions()) {
+                    if (random.nextBoolean()) {
+                        available.add(action.getId());
+                    }
+                }
+                assertEquivalent(script, available);
+            }
+        }
+    }
+
+    @Test
+    public void noActionsAvailable() throws Exception {
+        for (int id : WizardScriptCodecTest.SCRIPTS) {
+            WizardScript script = loadScript(id);
+            assertEquivalent(script, new HashSet<>());
+        }
+    }
+
+    @Test
+    public void componentChangeUpdatesTable() throws Exception {
+        WizardScript script = loadScript(WizardScriptCodecTest.SCRIPTS[0]);
+        Set<String> available = allIds(script);
+        setAvailable(script, available);
+        WizardTransitionTable table = WizardTransitionTable.build(mContext, script);
+        assertFalse(table.isStale());
+
+        final WizardAction first = script.getFirstAction();
+        ActionAvailability.onComponentStateQueued(mContext,
+                new ComponentName(TEST_PACKAGE, TEST_PACKAGE + "." + first.getId()),
+                PackageManager.COMPONENT_ENABLED_STATE_DISABLED);
+        // Applied right away if the candidates are loaded, otherwise once they are.
+        waitUntil(table::isStale);
+
+        available.remove(first.getId());
+        assertEquivalent(script, available,
+                WizardTransitionTable.build(mContext, script));
+    }
+
+    @Test
+    public void componentChangeWaitsForCandidates() throws Exception {
+        WizardScript script = loadScript(WizardScriptCodecTest.SCRIPTS[0]);
+        setAvailable(script, allIds(script));
+        final WizardAction first = script.getFirstAction();
+        // Cached without looking up the candidates, unlike through resolve().
+        assertTrue(ActionAvailability.isAvailable(mContext, first));
+        final int generation = ActionAvailability.getGeneration();
+
+        ActionAvailability.onComponentStateQueued(mContext,
+                new ComponentName(TEST_PACKAGE, TEST_PACKAGE + "." + first.getId()),
+                PackageManager.COMPONENT_ENABLED_STATE_DISABLED);
+        waitUntil(() -> ActionAvailability.getGeneration() != generation);
+
+        assertFalse(ActionAvailability.isAvailable(mContext, first));
+    }
+
+    private void assertEquivalent(WizardScript script, Set<String> available) {
+        setAvailable(script, available);
+        ActionAvailability.invalidate();
+        assertEquivalent(script, available, WizardTransitionTable.build(mContext, script));
+    }
+
+    private static void assertEquivalent(WizardScript script, Set<String> available,
+            WizardTransitionTable table) {
+        assertEquals(available.toString(),
+                idOf(walk(script, available, script.getFirstActionId())),
+                idOf(table.getFirstAction()));
+
+        TreeSet<Integer> resultCodes = new TreeSet<>();
+        resultCodes.add(Activity.RESULT_OK);
+        resultCodes.add(Activity.RESULT_CANCELED);
+        resultCodes.add(ResultCodes.RESULT_SKIP);
+        resultCodes.add(ResultCodes.RESULT_ACTIVITY_NOT_FOUND);
+        resultCodes.add(12345);
+        for (WizardAction action : script.getActions()) {
+            WizardTransitions transitions = action.getTransitions();
+            for (int i = 0; i < transitions.size(); i++) {
+                resultCodes.add(transitions.keyAt(i));
+            }
+        }
+
+        for (WizardAction action : script.getActions()) {
+            for (int resultCode : resultCodes) {
+                final String nextId = resultCode != Activity.RESULT_CANCELED
+                        ? action.getNextAction(resultCode) : null;
+                assertEquals(available + " " + action.getId() + " " + resultCode,
+                        idOf(walk(script, available, nextId)),
+                        idOf(table.getNextAction(action.getId(), resultCode)));
+            }
+        }
+    }
+
+    /**
+     * @return The first available action from <code>id</code> on, following
+     * {@link ResultCodes#RESULT_ACTIVITY_NOT_FOUND} past unavailable ones.
+     */
+    private static WizardAction walk(WizardScript script, Set<String> available, String id) {
+        int hops = 0;
+        while (id != null && !available.contains(id)) {
+            if (++hops > script.getActionCount()) {
+                return null;
+            }
+            id = script.getAction(id).getNextAction(ResultCodes.RESULT_ACTIVITY_NOT_FOUND);
+        }
+        return id != null ? script.getAction(id) : null;
+    }
+
+    private void setAvailable(WizardScript script, Set<String> available) {
+        for (WizardAction action : script.getActions()) {
+            mPackageManager.removeResolveInfosForIntent(action.getIntent(), TEST_PACKAGE);
+            if (available.contains(action.getId())) {
+                mPackageManager.addResolveInfoForIntent(action.getIntent(), getComponent(action));
+            }
+        }
+    }
+
+    private static ResolveInfo getComponent(WizardAction action) {
+        ResolveInfo info = new ResolveInfo();
+        info.activityInfo = new ActivityInfo();
+        info.activityInfo.packageName = TEST_PACKAGE;
+        info.activityInfo.name = TEST_PACKAGE + "." + action.getId();
+        return info;
+    }
+
+    /**
+     * Loads a shipped script, with intents that only the test resolves, so that the activities
+     * of the app itself do not count as available.
+     */
+    private static WizardScript loadScript(int id) throws Exception {
+        WizardScript parsed = WizardScript.parse(
+                new ByteArrayInputStream(WizardScriptCodecTest.readRaw(id)));
+        LinkedHashMap<String, WizardAction> actions = new LinkedHashMap<>();
+        for (WizardAction action : parsed.getActions()) {
+            actions.put(action.getId(), new WizardAction(action.getId(),
+                    "intent:#Intent;action=" + TEST_PACKAGE + "." + action.getId() + ";end",
+                    action.getTransitions()));
+        }
+        return new WizardScript(actions, parsed.getFirstActionId());
+    }
+
+    // The candidates are looked up on the app executor, so poll in real time.
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; !condition.getAsBoolean(); i++) {
+            assertTrue("Timed out", i < TIMEOUT_MS / POLL_INTERVAL_MS);
+            Thread.sleep(POLL_INTERVAL_MS);
+        }
+    }
+
+    private static Set<String> allIds(WizardScript script) {
+        HashSet<String> ids = new HashSet<>();
+        for (WizardAction action : script.getActions()) {
+            ids.add(action.getId());
+        }
+        return ids;
+    }
+
+    private static String idOf(WizardAction action) {
+        return action != null ? action.getId() : null;
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * SPDX-FileCopyrightText: 2026 The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.lineageos.setupwizard.tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.TreeMap;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Host-side model of a wizard script, parsed with the same rules as
+ * {@code org.lineageos.setupwizard.wizardmanager.WizardScript}.
+ *
+ * Scripts for the GMS SetupWizard, like {@code wizard_script.xml}, are read as well. Those have
+ * no firstAction and start at their first WizardAction, an action without a default result
+ * moves on to the next action of the script, and actions may run another script as a sub-flow
+ * with {@code wizard:script} instead of starting an intent. An action with the id
+ * {@link #END_OF_SCRIPT} ends the script.
+ */
+final class ScriptDocument {
+
+    static final String WIZARD_SCRIPT_NAMESPACE =
+            "http://schemas.android.com/apk/res/com.google.android.setupwizard";
+
+    static final String END_OF_SCRIPT = "END_OF_SCRIPT";
+
+    static final class Action {
+        final String id;
+        final String uri;
+        // The sub-flow script, for GMS scripts.
+        final String script;
+        final int line;
+        String defaultAction;
+        // The action that follows in the document, for GMS scripts.
+        String nextInDocument;
+        final TreeMap<Integer, String> results = new TreeMap<>();
+
+        Action(String id, String uri, String script, int line) {
+            this.id = id;
+            this.uri = uri;
+            this.script = script;
+            this.line = line;
+        }
+    }
+
+    final String name;
+    final byte[] source;
+    String firstActionId;
+    int line;
+    final LinkedHashMap<String, Action> actions = new LinkedHashMap<>();
+    private final ArrayList<String> mDuplicates = new ArrayList<>();
+
+    private ScriptDocument(String name, byte[] source) {
+        this.name = name;
+        this.source = source;
+    }
+
+    static ScriptDocument parse(String name, byte[] source) throws IOException {
+        ScriptDocument document = new ScriptDocument(name, source);
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        try {
+            XMLStreamReader reader =
+                    factory.createXMLStreamReader(new ByteArrayInputStream(source));
+            try {
+                document.read(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(name + ": " + e.getMessage(), e);
+        }
+        return document;
+    }
+
+    private void read(XMLStreamReader reader) throws XMLStreamException, IOException {
+        reader.nextTag();
+        if (!"WizardScript".equals(reader.getLocalName())) {
+            throw error(reader, "XML document must start with <WizardScript> tag; found "
+                    + reader.getLocalName());
+        }
+        line = reader.getLocation().getLineNumber();
+        // A missing firstAction is reported by validate(), so the rest can still be analyzed.
+        firstActionId = reader.getAttributeValue(WIZARD_SCRIPT_NAMESPACE, "firstAction");
+
+        Action action = null;
+        Action lastAction = null;
+        int depth = 1;
+        while (depth > 0) {
+            switch (reader.next()) {
+                case XMLStreamReader.START_ELEMENT -> {
+                    depth++;
+                    if (depth == 2 && "WizardAction".equals(reader.getLocalName())) {
+                        action = readAction(reader);
+                        if (lastAction != null) {
+                            lastAction.nextInDocument = action.id;
+                        }
+                        lastAction = action;
+                        Action previous = actions.putIfAbsent(action.id, action);
+                        if (previous != null) {
+                            mDuplicates.add(name + ":" + action.line
+                                    + ": Duplicate WizardAction id '" + action.id
+                                    + "', first defined at line " + previous.line);
+                        }
+                    } else if (depth == 3 && action != null
+                            && "result".equals(reader.getLocalName())) {
+                        readResult(reader, action);
+                    }
+                }
+                case XMLStreamReader.END_ELEMENT -> {
+                    depth--;
+                    if (depth == 1) {
+                        action = null;
+                    }
+                }
+                case XMLStreamReader.END_DOCUMENT -> depth = 0;
+                default -> {
+                }
+            }
+        }
+    }
+
+    private Action readAction(XMLStreamReader reader) throws IOException {
+        String id = reader.getAttributeValue(null, "id");
+        String uri = reader.getAttributeValue(WIZARD_SCRIPT_NAMESPACE, "uri");
+        String script = reader.getAttributeValue(WIZARD_SCRIPT_NAMESPACE, "script");
+        if (id == null) {
+            throw error(reader, "WizardAction must define an id");
+        }
+        // A missing URI is reported by validate(), so the rest can still be analyzed.
+        return new Action(id, uri, script, reader.getLocation().getLineNumber());
+    }
+
+    private void readResult(XMLStreamReader reader, Action action) throws IOException {
+        String resultCode = reader.getAttributeValue(WIZARD_SCRIPT_NAMESPACE, "resultCode");
+        String target = reader.getAttributeValue(WIZARD_SCRIPT_NAMESPACE, "action");
+        if (resultCode == null) {
+            action.defaultAction = target;
+        } else {
+            try {
+                action.results.put(Integer.parseInt(resultCode), target);
+            } catch (NumberFormatException e) {
+                throw error(reader, "Invalid resultCode " + resultCode);
+            }
+        }
+    }
+
+    /**
+     * @return Whether this is a script for the GMS SetupWizard, which is recognized by its
+     * missing firstAction.
+     */
+    boolean isGmsScript() {
+        return firstActionId == null;
+    }
+
+    /**
+     * @return The action the script starts at: firstAction, or the first WizardAction of a GMS
+     * script. Null if there is none.
+     */
+    String getEntryActionId() {
+        if (firstActionId != null) {
+            return firstActionId;
+        }
+        return actions.isEmpty() ? null : actions.keySet().iterator().next();
+    }
+
+    /**
+     * @return The action the given action moves on to for a result code it has no result for:
+     * its default result, or the next action for GMS scripts. Null if the wizard ends.
+     */
+    String getDefaultTarget(Action action) {
+        if (action.defaultAction != null || !isGmsScript()) {
+            return action.defaultAction;
+        }
+        return action.nextInDocument;
+    }
+
+    /**
+     * @return The problems that make {@code WizardScript} reject this script: actions without
+     * an intent URI, duplicate ids, a missing firstAction, and a firstAction or transitions
+     * that do not refer to an action of the script.
+     */
+    List<String> validate() {
+        ArrayList<String> problems = new ArrayList<>();
+        for (Action action : actions.values()) {
+            if (action.uri == null) {
+                problems.add(name + ":" + action.line + ": WizardAction '" + action.id
+                        + "' must define an intent URI");
+            }
+        }
+        problems.addAll(mDuplicates);
+        if (firstActionId == null) {
+            problems.add(name + ":" + line + ": WizardScript must define a firstAction");
+        } else if (!actions.containsKey(firstActionId)) {
+            problems.add(name + ":" + line + ": firstAction '" + firstActionId
+                    + "' is not a WizardAction");
+        }
+        addTransitionProblems(problems);
+        return problems;
+    }
+
+    /**
+     * @return The problems of a GMS script: actions with neither an intent URI nor a sub-flow
+     * script, duplicate ids, and transitions that do not refer to an action of the script.
+     */
+    List<String> validateGms() {
+        ArrayList<String> problems = new ArrayList<>();
+        for (Action action : actions.values()) {
+            if (action.uri == null && action.script == null
+                    && !END_OF_SCRIPT.equals(action.id)) {
+                problems.add(name + ":" + action.line + ": WizardAction '" + action.id
+                        + "' must define an intent URI or a script");
+            }
+        }
+        problems.addAll(mDuplicates);
+        if (actions.isEmpty()) {
+            problems.add(name + ":" + line + ": WizardScript has no WizardAction");
+        }
+        addTransitionProblems(problems);
+        return problems;
+    }
+
+    private void addTransitionProblems(List<String> problems) {
+        for (Action action : actions.values()) {
+            ArrayList<String> targets = new ArrayList<>(action.results.values());
+            targets.add(action.defaultAction);
+            for (String target : targets) {
+                if (target != null && !actions.containsKey(target)) {
+                    problems.add(name + ":" + action.line + ": WizardAction '" + action.id
+                            + "' refers to unknown action '" + target + "'");
+                }
+            }
+        }
+    }
+
+    private IOException error(XMLStreamReader reader, String message) {
+        return new IOException(name + ":" + reader.getLocation().getLineNumber() + ": "
+                + message);
+    }
+}
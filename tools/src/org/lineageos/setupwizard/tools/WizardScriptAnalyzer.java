@@ -0,0 +1,323 @@
+/*
+ * SPDX-FileCopyrightText: 2026 The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.lineageos.setupwizard.tools;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Checks wizard scripts on the host, without a device.
+ *
+ * Usage: WizardScriptAnalyzer [--entry &lt;id&gt;]... &lt;script.xml&gt;...
+ *
+ * For each script this reports everything {@code WizardScript} would reject it for, and warns
+ * about actions that cannot be reached from firstAction, cycles, and actions whose explicit
+ * result codes have no default transition. It also prints the worst-case number of hops from
+ * firstAction to the end of the flow. Exits with 1 if any script would be rejected.
+ *
+ * GMS scripts like {@code wizard_script.xml} are checked with the rules of the GMS SetupWizard
+ * instead, see {@link ScriptDocument}. A sub-flow run with {@code wizard:script} counts as a
+ * single action. The GMS SetupWizard also starts some actions by id, from the results of its
+ * own sub-flows or from outside of the flow, which no transition of the script shows. Those
+ * are passed with {@code --entry}, and count as reachable like firstAction. Entries a script
+ * does not define are ignored, so that one list can be used for several scripts.
+ */
+public final class WizardScriptAnalyzer {
+
+    private final ScriptDocument mDocument;
+    private final Set<String> mEntries;
+    private final PrintStream mOut;
+    private final ScriptDocument.Action[] mActions;
+    private final HashMap<String, Integer> mIndices = new HashMap<>();
+    // Per action: the indices of all actions it can transition to, without duplicates.
+    private final int[][] mEdges;
+
+    private WizardScriptAnalyzer(ScriptDocument document, Collection<String> entries,
+            PrintStream out) {
+        mDocument = document;
+        mEntries = new LinkedHashSet<>(entries);
+        mOut = out;
+        mActions = document.actions.values().toArray(new ScriptDocument.Action[0]);
+        for (int i = 0; i < mActions.length; i++) {
+            mIndices.put(mActions[i].id, i);
+        }
+        mEdges = new int[mActions.length][];
+        for (int i = 0; i < mActions.length; i++) {
+            LinkedHashSet<Integer> targets = new LinkedHashSet<>();
+            for (String target : mActions[i].results.values()) {
+                addTarget(targets, target);
+            }
+            addTarget(targets, document.getDefaultTarget(mActions[i]));
+            mEdges[i] = targets.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    public static void main(String[] args) {
+        ArrayList<String> entries = new ArrayList<>();
+        ArrayList<String> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("--entry".equals(args[i]) && i + 1 < args.length) {
+                entries.add(args[++i]);
+            } else {
+                inputs.add(args[i]);
+            }
+        }
+        if (inputs.isEmpty()) {
+            System.err.println("usage: WizardScriptAnalyzer [--entry <id>]... <script.xml>...");
+            System.exit(2);
+        }
+        boolean failed = false;
+        for (String arg : inputs) {
+            Path input = Paths.get(arg);
+            try {
+                ScriptDocument document =
+                        ScriptDocument.parse(input.toString(), Files.readAllBytes(input));
+                failed |= !analyze(document, entries, System.out);
+            } catch (IOException e) {
+                System.out.println("error: " + e.getMessage());
+                failed = true;
+            }
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    /**
+     * Prints the report for a script.
+     *
+     * @return Whether the script would be accepted by the runtime that reads it.
+     */
+    static boolean analyze(ScriptDocument document, PrintStream out) {
+        return analyze(document, List.of(), out);
+    }
+
+    /**
+     * Prints the report for a script, counting the given actions as reachable like the first
+     * action.
+     *
+     * @return Whether the script would be accepted by the runtime that reads it.
+     */
+    static boolean analyze(ScriptDocument document, Collection<String> entries,
+            PrintStream out) {
+        return new WizardScriptAnalyzer(document, entries, out).report();
+    }
+
+    private boolean report() {
+        if (mDocument.isGmsScript()) {
+            mOut.println(mDocument.name + ": " + mActions.length + " actions, GMS script "
+                    + "starting at '" + mDocument.getEntryActionId() + "'");
+        } else {
+            mOut.println(mDocument.name + ": " + mActions.length + " actions, firstAction '"
+                    + mDocument.firstActionId + "'");
+        }
+        List<String> problems =
+                mDocument.isGmsScript() ? mDocument.validateGms() : mDocument.validate();
+        for (String problem : problems) {
+            mOut.println("  error: " + problem);
+        }
+
+        final int first = indexOf(mDocument.getEntryActionId());
+        if (first >= 0) {
+            boolean[] reachable = findReachable(first);
+            for (String entry : mEntries) {
+                final int index = indexOf(entry);
+                if (index >= 0 && !reachable[index]) {
+                    markReachable(index, reachable);
+                }
+            }
+            for (int i = 0; i < mActions.length; i++) {
+                if (!reachable[i] && !isEndOfScript(i)) {
+                    warn(mActions[i], "action '" + mActions[i].id
+                            + "' is not reachable from the first action"
+                            + (mEntries.isEmpty() ? "" : " or the entries"));
+                }
+            }
+        }
+
+        int[] components = findComponents();
+        int[] componentSizes = new int[mActions.length];
+        for (int component : components) {
+            componentSizes[component]++;
+        }
+        for (int c = 0; c < mActions.length; c++) {
+            if (componentSizes[c] > 1 || (componentSizes[c] == 1 && hasSelfLoop(components, c))) {
+                ArrayList<String> cycle = new ArrayList<>();
+                ScriptDocument.Action firstInCycle = null;
+                for (int i = 0; i < mActions.length; i++) {
+                    if (components[i] == c) {
+                        cycle.add(mActions[i].id);
+                        firstInCycle = firstInCycle == null ? mActions[i] : firstInCycle;
+                    }
+                }
+                warn(firstInCycle, "cycle between " + String.join(", ", cycle));
+            }
+        }
+
+        for (ScriptDocument.Action action : mActions) {
+            if (!action.results.isEmpty() && mDocument.getDefaultTarget(action) == null) {
+                warn(action, "action '" + action.id + "' handles result codes "
+                        + action.results.keySet() + " but has no default result; any other "
+                        + "result code ends the wizard");
+            }
+        }
+
+        if (first >= 0) {
+            mOut.println("  worst-case hops: "
+                    + countWorstCaseHops(first, components, componentSizes)
+                    + (hasReachableCycle(first, components, componentSizes)
+                            ? " (not counting repeated cycles)" : ""));
+        }
+        return problems.isEmpty();
+    }
+
+    private void warn(ScriptDocument.Action action, String message) {
+        mOut.println("  warning: " + mDocument.name + ":" + action.line + ": " + message);
+    }
+
+    private boolean[] findReachable(int first) {
+        boolean[] reachable = new boolean[mActions.length];
+        markReachable(first, reachable);
+        return reachable;
+    }
+
+    private void markReachable(int first, boolean[] reachable) {
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        reachable[first] = true;
+        queue.add(first);
+        while (!queue.isEmpty()) {
+            for (int target : mEdges[queue.poll()]) {
+                if (!reachable[target]) {
+                    reachable[target] = true;
+                    queue.add(target);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tarjan's algorithm.
+     *
+     * @return The strongly connected component of each action. Components are numbered in
+     * reverse topological order, so all edges lead to a component with a lower or equal number.
+     */
+    private int[] findComponents() {
+        final int count = mActions.length;
+        int[] index = new int[count];
+        int[] lowLink = new int[count];
+        int[] components = new int[count];
+        boolean[] onStack = new boolean[count];
+        Arrays.fill(index, -1);
+        ArrayDeque<Integer> stack = new ArrayDeque<>();
+        int[] counters = new int[2]; // next index, next component
+        for (int i = 0; i < count; i++) {
+            if (index[i] < 0) {
+                strongConnect(i, index, lowLink, components, onStack, stack, counters);
+            }
+        }
+        return components;
+    }
+
+    private void strongConnect(int v, int[] index, int[] lowLink, int[] components,
+            boolean[] onStack, ArrayDeque<Integer> stack, int[] counters) {
+        index[v] = lowLink[v] = counters[0]++;
+        stack.push(v);
+        onStack[v] = true;
+        for (int w : mEdges[v]) {
+            if (index[w] < 0) {
+                strongConnect(w, index, lowLink, components, onStack, stack, counters);
+                lowLink[v] = Math.min(lowLink[v], lowLink[w]);
+            } else if (onStack[w]) {
+                lowLink[v] = Math.min(lowLink[v], index[w]);
+            }
+        }
+        if (lowLink[v] == index[v]) {
+            int w;
+            do {
+                w = stack.pop();
+                onStack[w] = false;
+                components[w] = counters[1];
+            } while (w != v);
+            counters[1]++;
+        }
+    }
+
+    private boolean hasSelfLoop(int[] components, int component) {
+        for (int i = 0; i < mActions.length; i++) {
+            if (components[i] == component) {
+                for (int target : mEdges[i]) {
+                    if (target == i) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean hasReachableCycle(int first, int[] components, int[] componentSizes) {
+        boolean[] reachable = findReachable(first);
+        for (int i = 0; i < mActions.length; i++) {
+            if (reachable[i] && (componentSizes[components[i]] > 1
+                    || hasSelfLoop(components, components[i]))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Longest path from the first action through the graph of components, where passing
+     * through a component may visit each of its actions once.
+     */
+    private int countWorstCaseHops(int first, int[] components, int[] componentSizes) {
+        final int componentCount = Arrays.stream(components).max().orElse(-1) + 1;
+        // Longest path in hops from entering each component to the end of the flow. Edges only
+        // lead to lower numbered components, so those are always computed first.
+        int[] longest = new int[componentCount];
+        for (int c = 0; c < componentCount; c++) {
+            int next = 0;
+            for (int i = 0; i < mActions.length; i++) {
+                if (components[i] != c) {
+                    continue;
+                }
+                for (int target : mEdges[i]) {
+                    if (components[target] != c) {
+                        next = Math.max(next, longest[components[target]] + 1);
+                    }
+                }
+            }
+            longest[c] = componentSizes[c] - 1 + next;
+        }
+        return longest[components[first]];
+    }
+
+    private void addTarget(LinkedHashSet<Integer> targets, String actionId) {
+        final int index = indexOf(actionId);
+        // Moving on to the end of a GMS script ends the wizard, it is no step of its own.
+        if (index >= 0 && !isEndOfScript(index)) {
+            targets.add(index);
+        }
+    }
+
+    private boolean isEndOfScript(int index) {
+        return mDocument.isGmsScript() && ScriptDocument.END_OF_SCRIPT.equals(mActions[index].id);
+    }
+
+    private int indexOf(String actionId) {
+        final Integer index = actionId != null ? mIndices.get(actionId) : null;
+        return index != null ? index : -1;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * SPDX-FileCopyrightText: 2026 The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.lineageos.setupwizard.tools;
+
+import org.lineageos.setupwizard.wizardmanager.WizardScriptFormat;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles wizard script XML resources into the binary form loaded by
+ * {@code WizardScript.loadFromUri}.
+ *
+ * Usage: WizardScriptCompiler -o &lt;res dir&gt; &lt;res/raw[-qualifiers]/script.xml&gt;...
+ *
+ * Each input is written to the same resource directory of the output tree, with
+ * {@link WizardScriptFormat#COMPILED_SUFFIX} appended to its name.
+ */
+public final class WizardScriptCompiler {
+
+    private WizardScriptCompiler() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 3 || !"-o".equals(args[0])) {
+            System.err.println("usage: WizardScriptCompiler -o <res dir> <script.xml>...");
+            System.exit(2);
+        }
+        Path outDir = Paths.get(args[1]);
+        try {
+            for (int i = 2; i < args.length; i++) {
+                compile(Paths.get(args[i]), outDir);
+            }
+        } catch (IOException e) {
+            System.err.println("error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void compile(Path input, Path outDir) throws IOException {
+        ScriptDocument document =
+                ScriptDocument.parse(input.toString(), Files.readAllBytes(input));
+        List<String> problems = document.validate();
+        if (!problems.isEmpty()) {
+            throw new IOException(String.join("\n", problems));
+        }
+        String fileName = input.getFileName().toString();
+        int extension = fileName.lastIndexOf('.');
+        String entryName = extension > 0 ? fileName.substring(0, extension) : fileName;
+        Path output = outDir.resolve(input.getParent().getFileName())
+                .resolve(entryName + WizardScriptFormat.COMPILED_SUFFIX + ".bin");
+        Files.createDirectories(output.getParent());
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(output)))) {
+            write(document, out);
+        }
+    }
+
+    private static void write(ScriptDocument document, DataOutputStream out) throws IOException {
+        WizardScriptFormat.writeHeader(out, WizardScriptFormat.checksum(document.source),
+                document.firstActionId, document.actions.size());
+        for (ScriptDocument.Action action : document.actions.values()) {
+            final int[] resultCodes = new int[action.results.size()];
+            final String[] resultActions = new String[action.results.size()];
+            int i = 0;
+            for (Map.Entry<Integer, String> result : action.results.entrySet()) {
+                resultCodes[i] = result.getKey();
+                resultActions[i] = result.getValue();
+                i++;
+            }
+            WizardScriptFormat.writeAction(out, action.id, action.uri, action.defaultAction,
+                    resultCodes, resultActions);
+        }
+    }
+}
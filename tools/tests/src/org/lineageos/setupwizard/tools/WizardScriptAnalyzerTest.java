@@ -0,0 +1,151 @@
+/*
+ * SPDX-FileCopyrightText: 2026 The LineageOS Project
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.lineageos.setupwizard.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+public class WizardScriptAnalyzerTest {
+
+    // Started by the GMS SetupWizard by id: from the results of its connectivity, zero touch
+    // and restore sub-flows, and from outside the flow for enterprise and kid setup.
+    private static final List<String> GMS_ENTRIES = List.of("connect_and_update",
+            "zero_touch", "unified_restore_flow", "enterprise_finalization_flow",
+            "kid_post_setup");
+
+    @Test
+    public void reportsDanglingTransition() throws IOException {
+        Result result = analyze("dangling_and_cycle.xml");
+        assertFalse(result.mAccepted);
+        assertTrue(result.mOutput, result.mOutput.contains(
+                "error: dangling_and_cycle.xml:11: WizardAction 'welcome' refers to unknown "
+                        + "action 'missing'"));
+    }
+
+    @Test
+    public void reportsCycle() throws IOException {
+        Result result = analyze("dangling_and_cycle.xml");
+        assertTrue(result.mOutput, result.mOutput.contains(
+                "warning: dangling_and_cycle.xml:16: cycle between network, datetime"));
+        assertTrue(result.mOutput, result.mOutput.contains(
+                "worst-case hops: 3 (not counting repeated cycles)"));
+    }
+
+    @Test
+    public void reportsUnreachableAction() throws IOException {
+        Result result = analyze("dangling_and_cycle.xml");
+        assertTrue(result.mOutput, result.mOutput.contains(
+                "action 'orphan' is not reachable from the first action"));
+        assertFalse(result.mOutput, result.mOutput.contains("'finish' is not reachable"));
+    }
+
+    @Test
+    public void startsGmsScriptAtFirstAction() throws IOException {
+        Result result = analyze("gms_sub_flow.xml");
+        assertTrue(result.mOutput, result.mAccepted);
+        assertTrue(result.mOutput, result.mOutput.contains("GMS script starting at 'welcome'"));
+        assertFalse(result.mOutput, result.mOutput.contains("error:"));
+        assertFalse(result.mOutput, result.mOutput.contains("not reachable"));
+        // welcome, account_flow, restore, finish; the end marker is no step.
+        assertTrue(result.mOutput, result.mOutput.contains("worst-case hops: 3\n"));
+    }
+
+    @Test
+    public void acceptsWizardScript() throws IOException {
+        Result result = analyze("res/raw/wizard_script.xml", GMS_ENTRIES);
+        assertTrue(result.mOutput, result.mAccepted);
+        assertTrue(result.mOutput, result.mOutput.contains(
+                "GMS script starting at 'oem_pre_setup'"));
+        // Only the SIM setup that repeats for each subscription.
+        assertWarnings(result, "res/raw/wizard_script.xml:55: cycle between carrier_setup");
+    }
+
+    @Test
+    public void acceptsWizardScriptUser() throws IOException {
+        Result result = analyze("res/raw/wizard_script_user.xml", GMS_ENTRIES);
+        assertTrue(result.mOutput, result.mAccepted);
+        // Only the account setup that can be retried.
+        assertWarnings(result, "res/raw/wizard_script_user.xml:51: cycle between "
+                + "load_account_intent, account_setup, rollback_auth_early_update");
+    }
+
+    @Test
+    public void entriesAreReachable() throws IOException {
+        Result result = analyze("dangling_and_cycle.xml", List.of("orphan", "unknown"));
+        assertFalse(result.mOutput, result.mOutput.contains("not reachable"));
+    }
+
+    @Test
+    public void acceptsLineageScripts() throws IOException {
+        for (String script : List.of("res/raw/lineage_wizard_script.xml",
+                "res/raw/lineage_wizard_script_managed_profile.xml",
+                "res/raw/lineage_wizard_script_user.xml")) {
+            Result result = analyze(script);
+            assertTrue(result.mOutput, result.mAccepted);
+            assertWarnings(result);
+        }
+    }
+
+    @Test
+    public void requiresFirstActionForCompiling() throws IOException {
+        ScriptDocument document = parse("gms_sub_flow.xml");
+        assertEquals("welcome", document.getEntryActionId());
+        assertTrue(document.validate().stream().anyMatch(
+                problem -> problem.endsWith("WizardScript must define a firstAction")));
+    }
+
+    private static Result analyze(String resource) throws IOException {
+        return analyze(resource, List.of());
+    }
+
+    private static Result analyze(String resource, Collection<String> entries)
+            throws IOException {
+        ScriptDocument document = parse(resource);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, true, StandardCharsets.UTF_8);
+        boolean accepted = WizardScriptAnalyzer.analyze(document, entries, out);
+        return new Result(accepted, bytes.toString(StandardCharsets.UTF_8));
+    }
+
+    private static void assertWarnings(Result result, String... expected) {
+        List<String> warnings = result.mOutput.lines()
+                .filter(line -> line.contains("warning: ") || line.contains("error: "))
+                .map(line -> line.substring(line.indexOf(": ") + 2))
+                .toList();
+        assertEquals(result.mOutput, Arrays.asList(expected), warnings);
+    }
+
+    private static ScriptDocument parse(String resource) throws IOException {
+        try (InputStream in =
+                WizardScriptAnalyzerTest.class.getClassLoader().getResourceAsStream(resource)) {
+            assertNotNull("Missing test resource " + resource, in);
+            return ScriptDocument.parse(resource, in.readAllBytes());
+        }
+    }
+
+    private static final class Result {
+        final boolean mAccepted;
+        final String mOutput;
+
+        Result(boolean accepted, String output) {
+            mAccepted = accepted;
+            mOutput = output;
+        }
+    }
+}